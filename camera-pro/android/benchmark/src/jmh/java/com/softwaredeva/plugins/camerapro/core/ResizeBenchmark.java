@@ -0,0 +1,89 @@
+package com.softwaredeva.plugins.camerapro.core;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The box pass of the quality resize mode on camera sized images, strip by strip like
+ * ImageUtils feeds it the rows of a bitmap. The final filtered scale is done by Android.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResizeBenchmark {
+
+    /**
+     * 12MP is the usual phone camera resolution, 50MP the one of recent high end sensors
+     */
+    @Param({ "4000x3000", "8160x6120" })
+    public String size;
+
+    /**
+     * The long side of the result: an upload size, and a thumbnail more than 8x smaller
+     */
+    @Param({ "1920", "320" })
+    public int target;
+
+    private int width;
+    private int height;
+    private int[] pixels;
+    private int factor;
+    private int[] strip;
+    private int[] reduced;
+
+    @Setup
+    public void setUp() {
+        String[] sides = size.split("x");
+        width = Integer.parseInt(sides[0]);
+        height = Integer.parseInt(sides[1]);
+        pixels = createImage(width, height);
+        int[] dimensions = ImageGeometry.getResizedDimensions(width, height, target, target);
+        factor = AreaDownscaler.getBoxFactor(width, height, dimensions[0], dimensions[1]);
+        strip = new int[width * factor];
+        reduced = new int[AreaDownscaler.getReducedSize(width, factor) * AreaDownscaler.getReducedSize(height, factor)];
+    }
+
+    @Benchmark
+    public int[] boxReduce() {
+        int reducedWidth = AreaDownscaler.getReducedSize(width, factor);
+        for (int y = 0, row = 0; y < height; y += factor, row++) {
+            int rows = Math.min(factor, height - y);
+            // Bitmap#getPixels copies the strip out of the bitmap
+            System.arraycopy(pixels, y * width, strip, 0, rows * width);
+            AreaDownscaler.reduceStrip(strip, 0, width, rows, factor, reduced, row * reducedWidth);
+        }
+        return reduced;
+    }
+
+    /**
+     * Create an image with smooth gradients and noise, closer to a photo than a flat color
+     */
+    static int[] createImage(int width, int height) {
+        int[] pixels = new int[width * height];
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(32);
+                int r = (x * 255 / width + noise) & 0xff;
+                int g = (y * 255 / height + noise) & 0xff;
+                int b = ((x + y) * 127 / (width + height) + noise) & 0xff;
+                pixels[y * width + x] = 0xff000000 | r << 16 | g << 8 | b;
+            }
+        }
+        return pixels;
+    }
+}
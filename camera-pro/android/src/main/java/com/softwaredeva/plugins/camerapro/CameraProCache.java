@@ -0,0 +1,490 @@
+package com.softwaredeva.plugins.camerapro;
+
+import com.getcapacitor.Logger;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the files written by the plugin under a size limit, evicting the least recently
+ * used ones first. The tracked files are listed in an index file, so on startup only the
+ * files missing from it need to be read from disk.
+ *
+ * Files written for a call still in progress are pinned until the call completes, so a
+ * batch never loses files it already wrote, or returned, to a small limit.
+ */
+public class CameraProCache {
+
+    public static final int DEFAULT_MAX_SIZE = 100 * 1024 * 1024;
+
+    static final String INDEX_FILE_NAME = ".camerapro-index";
+    // Marks the directory the legacy files were moved into, named so the scan skips it
+    static final String MIGRATED_FILE_NAME = INDEX_FILE_NAME + ".migrated";
+    private static final String INDEX_SEPARATOR = "\t";
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 10;
+
+    private final List<File> directories;
+    private final FilenameFilter filter;
+    private final File indexFile;
+    private final long maxSize;
+
+    // Access ordered, the eldest entry is the least recently used file
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0;
+    private boolean dirty = false;
+    private boolean saveQueued = false;
+
+    // The paths pinned by each call in progress
+    private final Map<String, Set<String>> pins = new HashMap<>();
+
+    private final ThreadPoolExecutor worker;
+
+    /**
+     * @param directories the directories holding the files, the index is kept in the first one
+     * @param filter accepts the files of the directories owned by the plugin
+     * @param maxSize the maximum size of the files, in bytes
+     */
+    public CameraProCache(List<File> directories, FilenameFilter filter, long maxSize) {
+        this.directories = directories;
+        this.filter = filter;
+        this.indexFile = new File(directories.get(0), INDEX_FILE_NAME);
+        this.maxSize = maxSize;
+        worker =
+            new ThreadPoolExecutor(
+                1,
+                1,
+                WORKER_KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "CameraPro-cache");
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            );
+        worker.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * The single thread disk work is serialized on, also used to run the plugin calls
+     */
+    public ExecutorService getWorker() {
+        return worker;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Load the index and evict files over the limit, in the background
+     */
+    public void load() {
+        execute(
+            () -> {
+                scan();
+                trim(null);
+                save();
+            }
+        );
+    }
+
+    /**
+     * Move the files earlier versions wrote outside of the managed directories into the
+     * first one, once, so they are evicted like the others. Call before {@link #load}.
+     * @param directory where the legacy files are
+     * @param legacy accepts the legacy files
+     */
+    public void migrate(final File directory, final FilenameFilter legacy) {
+        execute(
+            () -> {
+                File target = directories.get(0);
+                File marker = new File(target, MIGRATED_FILE_NAME);
+                if (marker.exists()) {
+                    return;
+                }
+                String[] names = directory.list(legacy);
+                if (names != null) {
+                    for (String name : names) {
+                        File file = new File(directory, name);
+                        if (file.isFile() && !file.renameTo(new File(target, name)) && !file.delete()) {
+                            Logger.warn(getLogTag(), "Unable to migrate " + file);
+                        }
+                    }
+                }
+                try {
+                    if (!marker.createNewFile()) {
+                        Logger.warn(getLogTag(), "Unable to mark the cache as migrated");
+                    }
+                } catch (IOException ex) {
+                    Logger.error(getLogTag(), "Unable to mark the cache as migrated", ex);
+                }
+            }
+        );
+    }
+
+    /**
+     * Start pinning the files touched for a call, until {@link #release} is called
+     * @param callId
+     */
+    public synchronized void hold(String callId) {
+        if (!pins.containsKey(callId)) {
+            pins.put(callId, new HashSet<>());
+        }
+    }
+
+    /**
+     * Unpin the files of a completed call, evicting them again like any other file
+     * @param callId
+     */
+    public void release(String callId) {
+        boolean overLimit;
+        synchronized (this) {
+            Set<String> released = pins.remove(callId);
+            if (released == null || released.isEmpty()) {
+                return;
+            }
+            overLimit = size > maxSize;
+        }
+        if (overLimit) {
+            execute(
+                () -> {
+                    trim(null);
+                    saveLater();
+                }
+            );
+        }
+    }
+
+    /**
+     * Track a file written or handed out by the plugin, as the most recently used one
+     * @param file
+     */
+    public void touch(final File file) {
+        touch(file, null);
+    }
+
+    /**
+     * Track a file written or handed out for a call, pinned if the call is held
+     * @param file
+     * @param callId the call the file is for, or null
+     */
+    public void touch(final File file, String callId) {
+        if (file == null || !isManaged(file)) {
+            return;
+        }
+        if (callId != null) {
+            synchronized (this) {
+                Set<String> pinned = pins.get(callId);
+                if (pinned != null) {
+                    pinned.add(file.getAbsolutePath());
+                }
+            }
+        }
+        final long accessed = System.currentTimeMillis();
+        execute(
+            () -> {
+                if (!file.isFile()) {
+                    return;
+                }
+                synchronized (this) {
+                    Entry entry = entries.get(file.getAbsolutePath());
+                    long fileSize = file.length();
+                    if (entry == null) {
+                        entry = new Entry(fileSize, accessed);
+                        entries.put(file.getAbsolutePath(), entry);
+                    } else {
+                        size -= entry.size;
+                        entry.size = fileSize;
+                        entry.accessed = accessed;
+                    }
+                    size += fileSize;
+                    dirty = true;
+                }
+                trim(file.getAbsolutePath());
+                saveLater();
+            }
+        );
+    }
+
+    /**
+     * Check if the file is one of the plugin's, files picked from elsewhere are never evicted
+     * @param file
+     * @return
+     */
+    public boolean isManaged(File file) {
+        File directory = file.getAbsoluteFile().getParentFile();
+        return directory != null && directories.contains(directory) && filter.accept(directory, file.getName());
+    }
+
+    /**
+     * Delete all the tracked files but those of calls in progress, only call from the worker
+     * @return the number of bytes freed
+     */
+    public long clear() {
+        scan();
+        List<String> paths;
+        synchronized (this) {
+            paths = new ArrayList<>(entries.keySet());
+        }
+        long freed = 0;
+        for (String path : paths) {
+            // The files of calls still in progress are left for them
+            if (!isPinned(path)) {
+                freed += remove(path);
+            }
+        }
+        save();
+        return freed;
+    }
+
+    /**
+     * The size of the tracked files, only call from the worker
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * The number of tracked files, only call from the worker
+     */
+    public synchronized int getCount() {
+        return entries.size();
+    }
+
+    public void shutdown() {
+        // Let the pending index writes finish
+        worker.shutdown();
+    }
+
+    /**
+     * Run on the worker, unless the cache was shut down and the work can be dropped
+     */
+    private void execute(Runnable work) {
+        try {
+            worker.execute(work);
+        } catch (RejectedExecutionException ex) {
+            Logger.debug(getLogTag(), "Cache is shut down, skipping");
+        }
+    }
+
+    /**
+     * Read the index, then list the directories to forget the files deleted since and
+     * to pick up the ones never indexed. Only those new files are read from disk.
+     */
+    private void scan() {
+        Map<String, Entry> indexed = readIndex();
+        Map<String, Entry> found = new LinkedHashMap<>();
+        for (File directory : directories) {
+            String[] names = directory.list(filter);
+            if (names == null) {
+                continue;
+            }
+            for (String name : names) {
+                if (name.startsWith(INDEX_FILE_NAME)) {
+                    continue;
+                }
+                String path = new File(directory, name).getAbsolutePath();
+                Entry entry = indexed.get(path);
+                if (entry == null) {
+                    File file = new File(path);
+                    if (!file.isFile()) {
+                        continue;
+                    }
+                    entry = new Entry(file.length(), file.lastModified());
+                }
+                found.put(path, entry);
+            }
+        }
+
+        List<Map.Entry<String, Entry>> sorted = new ArrayList<>(found.entrySet());
+        Collections.sort(sorted, (a, b) -> Long.compare(a.getValue().accessed, b.getValue().accessed));
+        synchronized (this) {
+            // Files touched since the index was written are more recent than anything read here
+            Map<String, Entry> touched = new LinkedHashMap<>(entries);
+            entries.clear();
+            size = 0;
+            for (Map.Entry<String, Entry> item : sorted) {
+                if (!touched.containsKey(item.getKey())) {
+                    entries.put(item.getKey(), item.getValue());
+                    size += item.getValue().size;
+                }
+            }
+            for (Map.Entry<String, Entry> item : touched.entrySet()) {
+                entries.put(item.getKey(), item.getValue());
+                size += item.getValue().size;
+            }
+            dirty = dirty || sorted.size() != indexed.size();
+        }
+    }
+
+    /**
+     * Evict the least recently used files until the cache fits in its limit, or only
+     * pinned files are left
+     * @param keep the path of a file to never evict, or null
+     */
+    private void trim(String keep) {
+        while (true) {
+            String eldest = null;
+            synchronized (this) {
+                if (size <= maxSize) {
+                    return;
+                }
+                for (String path : entries.keySet()) {
+                    if (!path.equals(keep) && !isPinned(path)) {
+                        eldest = path;
+                        break;
+                    }
+                }
+            }
+            if (eldest == null) {
+                return;
+            }
+            Logger.debug(getLogTag(), "Evicting " + eldest);
+            remove(eldest);
+        }
+    }
+
+    private synchronized boolean isPinned(String path) {
+        for (Set<String> pinned : pins.values()) {
+            if (pinned.contains(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private long remove(String path) {
+        long removed;
+        synchronized (this) {
+            Entry entry = entries.remove(path);
+            if (entry == null) {
+                return 0;
+            }
+            size -= entry.size;
+            dirty = true;
+            removed = entry.size;
+        }
+        File file = new File(path);
+        if (file.exists() && !file.delete()) {
+            Logger.warn(getLogTag(), "Unable to delete " + path);
+        }
+        return removed;
+    }
+
+    private Map<String, Entry> readIndex() {
+        Map<String, Entry> indexed = new LinkedHashMap<>();
+        if (!indexFile.exists()) {
+            return indexed;
+        }
+        try (BufferedReader reader = new BufferedReader(new FileReader(indexFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(INDEX_SEPARATOR);
+                if (fields.length != 3) {
+                    continue;
+                }
+                try {
+                    indexed.put(fields[0], new Entry(Long.parseLong(fields[1]), Long.parseLong(fields[2])));
+                } catch (NumberFormatException ex) {
+                    // Skip the corrupted line, the file is picked up by the directory listing
+                }
+            }
+        } catch (IOException ex) {
+            Logger.warn(getLogTag(), "Unable to read the cache index, rebuilding it");
+        }
+        return indexed;
+    }
+
+    /**
+     * Write the index once the work queued on the worker is done, so a batch of touches
+     * writes it once instead of once per file. Only call from the worker.
+     */
+    private void saveLater() {
+        synchronized (this) {
+            if (saveQueued) {
+                return;
+            }
+            saveQueued = true;
+        }
+        flush();
+    }
+
+    private void flush() {
+        if (!worker.getQueue().isEmpty()) {
+            try {
+                worker.execute(this::flush);
+                return;
+            } catch (RejectedExecutionException ex) {
+                // Shutting down, write now
+            }
+        }
+        synchronized (this) {
+            saveQueued = false;
+        }
+        save();
+    }
+
+    /**
+     * Write the index if it changed, replacing the previous one at once
+     */
+    private void save() {
+        List<String> lines = new ArrayList<>();
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            for (Map.Entry<String, Entry> item : entries.entrySet()) {
+                lines.add(item.getKey() + INDEX_SEPARATOR + item.getValue().size + INDEX_SEPARATOR + item.getValue().accessed);
+            }
+        }
+        File tempFile = new File(indexFile.getParentFile(), INDEX_FILE_NAME + ".tmp");
+        try {
+            try (BufferedWriter writer = new BufferedWriter(new FileWriter(tempFile))) {
+                for (String line : lines) {
+                    writer.write(line);
+                    writer.newLine();
+                }
+            }
+            if (!tempFile.renameTo(indexFile)) {
+                throw new IOException("Unable to replace " + indexFile);
+            }
+        } catch (IOException ex) {
+            Logger.error(getLogTag(), "Unable to write the cache index", ex);
+            tempFile.delete();
+        }
+    }
+
+    protected static String getLogTag() {
+        return Logger.tags("CameraProCache");
+    }
+
+    private static class Entry {
+
+        long size;
+        long accessed;
+
+        Entry(long size, long accessed) {
+            this.size = size;
+            this.accessed = accessed;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.softwaredeva.plugins.camerapro;
+
+/**
+ * An extra, smaller version of the image to return along with it
+ */
+public class CameraProDerivative {
+
+    private int width = 0;
+    private int height = 0;
+    private int quality = CameraProSettings.DEFAULT_QUALITY;
+    private CameraProOutputFormat format = CameraProOutputFormat.JPEG;
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    public int getQuality() {
+        return quality;
+    }
+
+    public void setQuality(int quality) {
+        this.quality = quality;
+    }
+
+    public CameraProOutputFormat getFormat() {
+        return format;
+    }
+
+    public void setFormat(CameraProOutputFormat format) {
+        this.format = format;
+    }
+}
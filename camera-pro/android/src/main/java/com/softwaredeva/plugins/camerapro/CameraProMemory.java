@@ -0,0 +1,127 @@
+package com.softwaredeva.plugins.camerapro;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.os.Build;
+import android.os.SystemClock;
+
+/**
+ * Tracks how much memory image processing can use. Decodes are sized against the memory
+ * class of the app and what is still available, and the memory pressure reported by the
+ * system, or by an out of memory error, lowers the processing concurrency for a while.
+ */
+public class CameraProMemory implements ComponentCallbacks2 {
+
+    // Decoded pixels are copied once more by the orientation and resize transform
+    static final int PIPELINE_COPIES = 2;
+
+    // A busy heap doesn't subsample decodes below this, about 2MP of ARGB_8888 pixels
+    static final long MIN_DECODE_BUDGET = 8 * 1024 * 1024;
+
+    // How long a memory pressure signal keeps the concurrency lowered
+    static final long PRESSURE_DURATION_MILLIS = 30 * 1000;
+
+    private final ActivityManager activityManager;
+    private final long memoryClass;
+
+    private volatile int pressureLevel = 0;
+    private volatile long pressureTime = 0;
+    private volatile Runnable trimListener;
+
+    public CameraProMemory(Context context) {
+        activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        long classBytes = activityManager != null ? activityManager.getMemoryClass() * 1024L * 1024L : 0;
+        memoryClass = classBytes > 0 ? classBytes : Runtime.getRuntime().maxMemory();
+    }
+
+    /**
+     * Set the listener called when the system asks to release memory
+     * @param trimListener
+     */
+    public void setTrimListener(Runnable trimListener) {
+        this.trimListener = trimListener;
+    }
+
+    /**
+     * Get the memory still available for bitmaps. Before Android 8 pixels are allocated on the
+     * Java heap, so the heap left is what counts. Since then they are native allocations,
+     * bounded by the memory the system has left before it starts killing apps.
+     * @return
+     */
+    public long getAvailableMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        long heapLimit = Math.min(memoryClass, runtime.maxMemory());
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O || activityManager == null) {
+            return Math.max(0, heapLimit - (runtime.totalMemory() - runtime.freeMemory()));
+        }
+        ActivityManager.MemoryInfo info = new ActivityManager.MemoryInfo();
+        activityManager.getMemoryInfo(info);
+        return Math.max(0, Math.min(memoryClass, info.availMem - info.threshold));
+    }
+
+    /**
+     * Get the bytes of decoded pixels the images processed at the same time may hold together,
+     * leaving room for the copies made by the pipeline and the rest of the app
+     * @return
+     */
+    public long getPixelCapacity() {
+        return Math.max(MIN_DECODE_BUDGET, memoryClass / PIPELINE_COPIES);
+    }
+
+    /**
+     * Get the most bytes a decode may take, sharing the available memory between the
+     * images decoded at the same time
+     * @param concurrentDecodes
+     * @return
+     */
+    public long getDecodeBudget(int concurrentDecodes) {
+        long share = getAvailableMemory() / ((long) Math.max(1, concurrentDecodes) * PIPELINE_COPIES);
+        return Math.max(MIN_DECODE_BUDGET, share);
+    }
+
+    /**
+     * Get the number of images to process at the same time, lowered under memory pressure
+     * @param threads the number of threads without memory pressure
+     * @return
+     */
+    public int getProcessingThreads(int threads) {
+        if (SystemClock.elapsedRealtime() - pressureTime > PRESSURE_DURATION_MILLIS) {
+            return threads;
+        }
+        if (pressureLevel >= TRIM_MEMORY_RUNNING_LOW) {
+            return 1;
+        }
+        return Math.max(1, threads / 2);
+    }
+
+    /**
+     * Report an out of memory error, handled like critical memory pressure
+     */
+    public void onOutOfMemory() {
+        onTrimMemory(TRIM_MEMORY_RUNNING_CRITICAL);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        // Hiding the UI doesn't mean memory is short
+        if (level == TRIM_MEMORY_UI_HIDDEN) {
+            return;
+        }
+        pressureLevel = level;
+        pressureTime = SystemClock.elapsedRealtime();
+        Runnable listener = trimListener;
+        if (listener != null) {
+            listener.run();
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {}
+}
@@ -0,0 +1,107 @@
+package com.softwaredeva.plugins.camerapro;
+
+import com.getcapacitor.JSObject;
+import com.softwaredeva.plugins.camerapro.core.PixelMemoryBudget;
+import com.softwaredeva.plugins.camerapro.core.SampleWindow;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Aggregates the timings of every completed call since the plugin was loaded or the metrics
+ * were reset. Percentiles are computed over the most recent calls, so the memory used doesn't
+ * grow with the number of calls.
+ */
+public class CameraProMetrics {
+
+    // The number of recent values percentiles are computed over
+    static final int WINDOW_SIZE = 256;
+
+    private final Map<CameraProStage, SampleWindow> durations = new LinkedHashMap<>();
+    private final Map<String, SampleWindow> bytes = new LinkedHashMap<>();
+    private long calls = 0;
+    private long since = System.currentTimeMillis();
+
+    /**
+     * Add the timings of a completed call
+     * @param timings
+     */
+    public synchronized void record(CameraProTimings timings) {
+        calls++;
+        for (Map.Entry<CameraProStage, Long> entry : timings.getDurations().entrySet()) {
+            getWindow(durations, entry.getKey()).add(entry.getValue());
+        }
+        for (Map.Entry<String, Long> entry : timings.getBytes().entrySet()) {
+            getWindow(bytes, entry.getKey()).add(entry.getValue());
+        }
+    }
+
+    public synchronized void reset() {
+        durations.clear();
+        bytes.clear();
+        calls = 0;
+        since = System.currentTimeMillis();
+    }
+
+    /**
+     * Get the metrics, durations in milliseconds
+     * @return
+     */
+    public synchronized JSObject toJson() {
+        JSObject stages = new JSObject();
+        for (Map.Entry<CameraProStage, SampleWindow> entry : durations.entrySet()) {
+            SampleWindow window = entry.getValue();
+            JSObject stage = new JSObject();
+            stage.put("count", window.getCount());
+            stage.put("mean", CameraProTimings.toMillis(window.getTotal() / window.getCount()));
+            stage.put("p50", CameraProTimings.toMillis(window.getPercentile(50)));
+            stage.put("p90", CameraProTimings.toMillis(window.getPercentile(90)));
+            stage.put("p99", CameraProTimings.toMillis(window.getPercentile(99)));
+            stage.put("max", CameraProTimings.toMillis(window.getMax()));
+            stages.put(entry.getKey().getStage(), stage);
+        }
+        JSObject counters = new JSObject();
+        for (Map.Entry<String, SampleWindow> entry : bytes.entrySet()) {
+            SampleWindow window = entry.getValue();
+            JSObject counter = new JSObject();
+            counter.put("count", window.getCount());
+            counter.put("total", window.getTotal());
+            counter.put("p50", window.getPercentile(50));
+            counter.put("p90", window.getPercentile(90));
+            counter.put("p99", window.getPercentile(99));
+            counter.put("max", window.getMax());
+            counters.put(entry.getKey(), counter);
+        }
+        JSObject ret = new JSObject();
+        ret.put("calls", calls);
+        ret.put("since", since);
+        ret.put("durations", stages);
+        ret.put("bytes", counters);
+        return ret;
+    }
+
+    /**
+     * Get the gauges of the pixel memory budget, wait times in milliseconds
+     * @param budget
+     * @return
+     */
+    public static JSObject getMemoryJson(PixelMemoryBudget budget) {
+        JSObject ret = new JSObject();
+        ret.put("capacity", budget.getCapacity());
+        ret.put("reserved", budget.getReserved());
+        ret.put("peak", budget.getPeakReserved());
+        ret.put("reservations", budget.getReservations());
+        ret.put("waits", budget.getWaits());
+        ret.put("waitTime", CameraProTimings.toMillis(budget.getTotalWaitNanos()));
+        ret.put("maxWaitTime", CameraProTimings.toMillis(budget.getMaxWaitNanos()));
+        return ret;
+    }
+
+    private static <K> SampleWindow getWindow(Map<K, SampleWindow> windows, K key) {
+        SampleWindow window = windows.get(key);
+        if (window == null) {
+            window = new SampleWindow(WINDOW_SIZE);
+            windows.put(key, window);
+        }
+        return window;
+    }
+}
@@ -0,0 +1,150 @@
+package com.softwaredeva.plugins.camerapro;
+
+import android.graphics.Bitmap;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaFormat;
+import android.os.Build;
+
+public enum CameraProOutputFormat {
+    JPEG("jpeg", "jpeg", "image/jpeg", "jpeg"),
+    WEBP_LOSSY("webp-lossy", "webp", "image/webp", "webp"),
+    WEBP_LOSSLESS("webp-lossless", "webp", "image/webp", "webp"),
+    PNG("png", "png", "image/png", "png"),
+    HEIF("heif", "heif", "image/heif", "heic");
+
+    // Presets picking a format for the encoding speed or the output size
+    public static final String PRESET_SPEED = "speed";
+    public static final String PRESET_SIZE = "size";
+
+    private static Boolean heifEncoderAvailable;
+
+    private String option;
+    private String format;
+    private String mimeType;
+    private String extension;
+
+    CameraProOutputFormat(String option, String format, String mimeType, String extension) {
+        this.option = option;
+        this.format = format;
+        this.mimeType = mimeType;
+        this.extension = extension;
+    }
+
+    /**
+     * The value of the format option
+     */
+    public String getOption() {
+        return option;
+    }
+
+    /**
+     * The format returned to the caller, ex: jpeg, webp
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * Get the format for the given option value or preset
+     * @param option
+     * @return the format, or null if the option is unknown
+     */
+    public static CameraProOutputFormat fromOption(String option) {
+        if (option == null) {
+            return null;
+        }
+        if (PRESET_SPEED.equals(option)) {
+            return JPEG;
+        }
+        if (PRESET_SIZE.equals(option)) {
+            return WEBP_LOSSY;
+        }
+        for (CameraProOutputFormat outputFormat : values()) {
+            if (outputFormat.option.equals(option)) {
+                return outputFormat;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the format that can actually be written on this device.
+     * HEIF needs Android 9 and a hardware encoder, JPEG is used otherwise.
+     * @return
+     */
+    public CameraProOutputFormat resolve() {
+        if (this == HEIF && !isHeifSupported()) {
+            return JPEG;
+        }
+        return this;
+    }
+
+    /**
+     * Get the format to pass to {@link Bitmap#compress}, not used for HEIF
+     * @return
+     */
+    @SuppressWarnings("deprecation")
+    public Bitmap.CompressFormat getCompressFormat() {
+        switch (this) {
+            case WEBP_LOSSY:
+                return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+            case WEBP_LOSSLESS:
+                return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R ? Bitmap.CompressFormat.WEBP_LOSSLESS : Bitmap.CompressFormat.WEBP;
+            case PNG:
+                return Bitmap.CompressFormat.PNG;
+            default:
+                return Bitmap.CompressFormat.JPEG;
+        }
+    }
+
+    /**
+     * Get the quality to pass to the encoder for the requested quality.
+     * Before Android 11, WebP is lossless at quality 100 and lossy below it. From Android 11,
+     * the quality of lossless WebP trades encoding speed for output size.
+     * @param quality
+     * @return
+     */
+    public int getCompressQuality(int quality) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.R) {
+            if (this == WEBP_LOSSLESS) {
+                return 100;
+            } else if (this == WEBP_LOSSY) {
+                return Math.min(quality, 99);
+            }
+        }
+        return quality;
+    }
+
+    private static synchronized boolean isHeifSupported() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.P) {
+            return false;
+        }
+        if (heifEncoderAvailable == null) {
+            heifEncoderAvailable = hasEncoder(MediaFormat.MIMETYPE_IMAGE_ANDROID_HEIC) || hasEncoder(MediaFormat.MIMETYPE_VIDEO_HEVC);
+        }
+        return heifEncoderAvailable;
+    }
+
+    private static boolean hasEncoder(String mimeType) {
+        for (MediaCodecInfo info : new MediaCodecList(MediaCodecList.REGULAR_CODECS).getCodecInfos()) {
+            if (!info.isEncoder()) {
+                continue;
+            }
+            for (String type : info.getSupportedTypes()) {
+                if (type.equalsIgnoreCase(mimeType)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
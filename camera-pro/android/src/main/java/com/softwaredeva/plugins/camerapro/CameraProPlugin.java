@@ -16,6 +16,7 @@ import android.os.Bundle;
 import android.os.Environment;
 import android.os.ParcelFileDescriptor;
 import android.os.Parcelable;
+import android.os.SystemClock;
 import android.provider.MediaStore;
 import android.util.Base64;
 import androidx.activity.result.ActivityResult;
@@ -32,21 +33,36 @@ import com.getcapacitor.annotation.ActivityCallback;
 import com.getcapacitor.annotation.CapacitorPlugin;
 import com.getcapacitor.annotation.Permission;
 import com.getcapacitor.annotation.PermissionCallback;
-import java.io.ByteArrayInputStream;
+import com.softwaredeva.plugins.camerapro.core.ImageGeometry;
+import com.softwaredeva.plugins.camerapro.core.Mp4Metadata;
+import com.softwaredeva.plugins.camerapro.core.PixelMemoryBudget;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
 
 /**
  * The CameraPro plugin makes it easy to take a photo or have the user select a photo
@@ -87,57 +103,269 @@ public class CameraProPlugin extends Plugin {
     private static final String UNABLE_TO_PROCESS_IMAGE = "Unable to process image";
     private static final String UNABLE_TO_PROCESS_VIDEO = "Unable to process video";
     private static final String IMAGE_EDIT_ERROR = "Unable to edit image";
+    private static final String IMAGE_PROCESS_CANCELLED_ERROR = "Image processing was cancelled";
+    private static final String VIDEO_PROCESS_CANCELLED_ERROR = "Video processing was cancelled";
+    private static final String CACHE_SHUT_DOWN_ERROR = "The cache is shut down";
     private static final String IMAGE_GALLERY_SAVE_ERROR = "Unable to save the image in the gallery";
 
-    private String imageFileSavePath;
-    private String videoFileSavePath;
-    private String imageEditedFileSavePath;
-    private Uri imageFileUri;
-    private Uri videoFileUri;
-    private Uri imagePickedContentUri;
-    private Uri videoPickedContentUri;
-    private boolean isEdited = false;
+    // Event constants
+    static final String PICK_IMAGES_PROGRESS_EVENT = "pickImagesProgress";
+    static final String PHOTO_PREVIEW_EVENT = "photoPreview";
+
+    // Processing pool constants
+    private static final int MAX_PROCESSING_THREADS = 4;
+    private static final long PROCESSING_THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    // Decodes retried with fewer pixels after running out of memory
+    private static final int MAX_DECODE_RETRIES = 3;
+
+    // Cache constants
+    static final String CACHE_DIRECTORY = "CameraPro";
+    static final String CONFIG_MAX_CACHE_SIZE = "maxCacheSize";
+    // The outputs earlier versions wrote to the root of the app cache directory: the image
+    // name, the derivative size, a millisecond timestamp and the extension. Other names can't
+    // be told apart from the app's own files and are left alone.
+    private static final Pattern LEGACY_OUTPUT_NAME = Pattern.compile(".+\\.(\\d+x\\d+\\.)?\\d{13}\\.(jpeg|webp|png|heic)");
+
     private boolean isFirstRequest = true;
-    private boolean isSaved = false;
 
-    private CameraProSettings settings = new CameraProSettings();
-    private CameraProVideoSettings videoSettings = new CameraProVideoSettings();
+    // The sessions of the calls in progress, every call ends its session as it resolves or rejects
+    private final Map<String, CameraProSession> sessions = Collections.synchronizedMap(new HashMap<>());
+    private String restoredImageFileSavePath;
+
+    private ThreadPoolExecutor processingExecutor;
+    private int processingThreads;
+    private CameraProMemory memory;
+    private PixelMemoryBudget pixelBudget;
+    private final Map<String, Future<?>> imageTasks = new ConcurrentHashMap<>();
+    private CameraProCache cache;
+    private final CameraProResultCache resultCache = new CameraProResultCache();
+    private final CameraProMetrics metrics = new CameraProMetrics();
+
+    @Override
+    public void load() {
+        memory = new CameraProMemory(getContext());
+        memory.setTrimListener(this::onTrimMemory);
+        getContext().registerComponentCallbacks(memory);
+        pixelBudget = new PixelMemoryBudget(memory.getPixelCapacity());
+        getProcessingExecutor();
+        cache = createCache();
+        cache.migrate(getContext().getCacheDir(), (dir, name) -> LEGACY_OUTPUT_NAME.matcher(name).matches());
+        cache.load();
+    }
+
+    @Override
+    protected void handleOnDestroy() {
+        // Images still being processed can't be delivered anymore
+        for (Future<?> task : imageTasks.values()) {
+            task.cancel(true);
+        }
+        imageTasks.clear();
+        synchronized (this) {
+            if (processingExecutor != null) {
+                processingExecutor.shutdownNow();
+            }
+        }
+        if (cache != null) {
+            cache.shutdown();
+        }
+        if (memory != null) {
+            getContext().unregisterComponentCallbacks(memory);
+        }
+    }
+
+    /**
+     * Release what can be under memory pressure: fewer images are processed at the same time
+     * for a while, and the results kept for images picked again are dropped
+     */
+    private void onTrimMemory() {
+        resultCache.clear();
+        synchronized (this) {
+            if (processingExecutor != null && !processingExecutor.isShutdown()) {
+                updateProcessingThreads(processingExecutor);
+            }
+        }
+    }
+
+    /**
+     * Create the cache of the files written by the plugin: the processed images and
+     * derivatives in its cache directory, and the camera photos and videos
+     * @return
+     */
+    private CameraProCache createCache() {
+        File externalPictures = getContext().getExternalFilesDir(Environment.DIRECTORY_PICTURES);
+        final File picturesDirectory = externalPictures != null ? externalPictures.getAbsoluteFile() : null;
+        List<File> directories = new ArrayList<>();
+        directories.add(getCacheDirectory());
+        if (picturesDirectory != null) {
+            directories.add(picturesDirectory);
+        }
+        int maxSize = getConfig().getInt(CONFIG_MAX_CACHE_SIZE, CameraProCache.DEFAULT_MAX_SIZE);
+        // The pictures directory is shared with the app, only the camera files are managed
+        return new CameraProCache(
+            directories,
+            (dir, name) -> !dir.equals(picturesDirectory) || CameraProUtils.isCameraFile(name),
+            maxSize
+        );
+    }
+
+    private File getCacheDirectory() {
+        File cacheDirectory = new File(getContext().getCacheDir(), CACHE_DIRECTORY).getAbsoluteFile();
+        cacheDirectory.mkdirs();
+        return cacheDirectory;
+    }
+
+    /**
+     * Create the pool used to process picked images. It lives as long as the plugin,
+     * is bounded by the number of cores and lets idle threads die off between batches.
+     * @return
+     */
+    private ThreadPoolExecutor createProcessingExecutor() {
+        processingThreads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, MAX_PROCESSING_THREADS));
+        final int threads = memory.getProcessingThreads(processingThreads);
+        final AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "CameraPro-worker-" + threadCount.incrementAndGet());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            threads,
+            threads,
+            PROCESSING_THREAD_KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            threadFactory
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Get the processing pool, resized to the current memory pressure. Once the plugin is
+     * destroyed the pool stays shut down and rejects new work.
+     * @return
+     */
+    private synchronized ThreadPoolExecutor getProcessingExecutor() {
+        if (processingExecutor == null) {
+            processingExecutor = createProcessingExecutor();
+        } else if (!processingExecutor.isShutdown()) {
+            updateProcessingThreads(processingExecutor);
+        }
+        return processingExecutor;
+    }
+
+    /**
+     * Resize the pool to the number of threads the current memory pressure allows. Threads
+     * above it finish their current image before stopping.
+     * @param executor
+     */
+    private void updateProcessingThreads(ThreadPoolExecutor executor) {
+        final int threads = memory.getProcessingThreads(processingThreads);
+        if (threads < executor.getCorePoolSize()) {
+            executor.setCorePoolSize(threads);
+            executor.setMaximumPoolSize(threads);
+        } else if (threads > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(threads);
+            executor.setCorePoolSize(threads);
+        }
+    }
 
     @PluginMethod
     public void getPhoto(PluginCall call) {
-        isEdited = false;
-        settings = getSettings(call);
-        doShow(call);
+        CameraProSession session = startSession(call);
+        doShow(call, session);
     }
 
     @PluginMethod
     public void getVideo(PluginCall call) {
-        isEdited = false;
-        videoSettings = getVideoSettings(call);
-        doVideoShow(call);
+        CameraProSession session = startSession(call);
+        doVideoShow(call, session);
     }
 
     @PluginMethod
     public void pickImages(PluginCall call) {
-        settings = getSettings(call);
+        startSession(call);
         openPhotos(call, true, false);
     }
 
-    private void doShow(PluginCall call) {
-        switch (settings.getSource()) {
+    @PluginMethod
+    public void pickVideos(PluginCall call) {
+        startSession(call);
+        showVideoLibrary(call, true, false);
+    }
+
+    /**
+     * Start a new session for the call, with the settings it was made with
+     * @param call
+     * @return
+     */
+    private CameraProSession startSession(PluginCall call) {
+        CameraProSession session = new CameraProSession(call.getCallbackId());
+        session.setSettings(getSettings(call));
+        session.setVideoSettings(getVideoSettings(call));
+        sessions.put(session.getCallId(), session);
+        cache.hold(session.getCallId());
+        return session;
+    }
+
+    /**
+     * Get the session of the call. The session is recreated from the call if the app
+     * was restarted while another activity was in the foreground.
+     * @param call
+     * @return
+     */
+    private CameraProSession getSession(PluginCall call) {
+        CameraProSession session = sessions.get(call.getCallbackId());
+        if (session == null) {
+            session = startSession(call);
+            if (restoredImageFileSavePath != null) {
+                session.setImageFileSavePath(restoredImageFileSavePath);
+                restoredImageFileSavePath = null;
+            }
+        }
+        return session;
+    }
+
+    private void endSession(CameraProSession session) {
+        endSession(session.getCallId());
+    }
+
+    private void endSession(String callId) {
+        sessions.remove(callId);
+        cache.release(callId);
+    }
+
+    /**
+     * Reject the call and end its session, so no session outlives its call
+     * @param call
+     * @param message
+     */
+    private void rejectCall(PluginCall call, String message) {
+        endSession(call.getCallbackId());
+        call.reject(message);
+    }
+
+    private void rejectCall(PluginCall call, String message, Exception ex) {
+        endSession(call.getCallbackId());
+        call.reject(message, ex);
+    }
+
+    private void doShow(PluginCall call, CameraProSession session) {
+        switch (session.getSettings().getSource()) {
             case CAMERA:
-                showCamera(call);
+                showCamera(call, session);
                 break;
             case PHOTOS:
                 showPhotos(call);
                 break;
             default:
-                showPrompt(call);
+                showPrompt(call, session);
                 break;
         }
     }
 
-    private void showPrompt(final PluginCall call) {
+    private void showPrompt(final PluginCall call, final CameraProSession session) {
         // We have all necessary permissions, open the camera
         List<String> options = new ArrayList<>();
         options.add(call.getString("promptLabelPhoto", "From Photos"));
@@ -149,33 +377,33 @@ public class CameraProPlugin extends Plugin {
             options,
             index -> {
                 if (index == 0) {
-                    settings.setSource(CameraProSource.PHOTOS);
+                    session.getSettings().setSource(CameraProSource.PHOTOS);
                     openPhotos(call);
                 } else if (index == 1) {
-                    settings.setSource(CameraProSource.CAMERA);
-                    openCamera(call);
+                    session.getSettings().setSource(CameraProSource.CAMERA);
+                    openCamera(call, session);
                 }
             },
-            () -> call.reject("User cancelled photos app")
+            () -> rejectCall(call, "User cancelled photos app")
         );
         fragment.show(getActivity().getSupportFragmentManager(), "capacitorModalsActionSheet");
     }
 
-    private void doVideoShow(PluginCall call) {
-        switch (videoSettings.getSource()) {
+    private void doVideoShow(PluginCall call, CameraProSession session) {
+        switch (session.getVideoSettings().getSource()) {
             case CAMERA:
-                showVideoCamera(call);
+                showVideoCamera(call, session);
                 break;
             case LIBRARY:
                 showVideoLibrary(call);
                 break;
             default:
-                showVideoPrompt(call);
+                showVideoPrompt(call, session);
                 break;
         }
     }
 
-    private void showVideoPrompt(final PluginCall call) {
+    private void showVideoPrompt(final PluginCall call, final CameraProSession session) {
         // We have all necessary permissions, open the camera
         List<String> options = new ArrayList<>();
         options.add(call.getString("promptLabelLibrary", "From Library"));
@@ -187,46 +415,46 @@ public class CameraProPlugin extends Plugin {
             options,
             index -> {
                 if (index == 0) {
-                    videoSettings.setSource(CameraProVideoSource.LIBRARY);
+                    session.getVideoSettings().setSource(CameraProVideoSource.LIBRARY);
                     showVideoLibrary(call);
                 } else if (index == 1) {
-                    videoSettings.setSource(CameraProVideoSource.CAMERA);
-                    showVideoCamera(call);
+                    session.getVideoSettings().setSource(CameraProVideoSource.CAMERA);
+                    showVideoCamera(call, session);
                 }
             },
-            () -> call.reject("User cancelled photos app")
+            () -> rejectCall(call, "User cancelled photos app")
         );
         fragment.show(getActivity().getSupportFragmentManager(), "capacitorModalsActionSheet");
     }
 
-    private void showCamera(final PluginCall call) {
+    private void showCamera(final PluginCall call, final CameraProSession session) {
         if (!getContext().getPackageManager().hasSystemFeature(PackageManager.FEATURE_CAMERA_ANY)) {
-            call.reject(NO_CAMERA_ERROR);
+            rejectCall(call, NO_CAMERA_ERROR);
             return;
         }
-        openCamera(call);
+        openCamera(call, session);
     }
 
-    private void showVideoCamera(final PluginCall call) {
+    private void showVideoCamera(final PluginCall call, final CameraProSession session) {
         if (!getContext().getPackageManager().hasSystemFeature(PackageManager.FEATURE_CAMERA_ANY)) {
-            call.reject(NO_CAMERA_ERROR);
+            rejectCall(call, NO_CAMERA_ERROR);
             return;
         }
-        openVideoCamera(call);
+        openVideoCamera(call, session);
     }
 
     private void showPhotos(final PluginCall call) {
         openPhotos(call);
     }
 
-    private boolean checkCameraPermissions(PluginCall call) {
+    private boolean checkCameraPermissions(PluginCall call, CameraProSession session) {
         // if the manifest does not contain the camera permissions key, we don't need to ask the user
         boolean needCameraProPerms = isPermissionDeclared(CAMERA);
         boolean hasCameraProPerms = !needCameraProPerms || getPermissionState(CAMERA) == PermissionState.GRANTED;
         boolean hasPhotoPerms = getPermissionState(PHOTOS) == PermissionState.GRANTED;
 
         // If we want to save to the gallery, we need two permissions
-        if (settings.isSaveToGallery() && !(hasCameraProPerms && hasPhotoPerms) && isFirstRequest) {
+        if (session.getSettings().isSaveToGallery() && !(hasCameraProPerms && hasPhotoPerms) && isFirstRequest) {
             isFirstRequest = false;
             String[] aliases;
             if (needCameraProPerms) {
@@ -245,14 +473,14 @@ public class CameraProPlugin extends Plugin {
         return true;
     }
 
-    private boolean checkVideoCameraPermissions(PluginCall call) {
+    private boolean checkVideoCameraPermissions(PluginCall call, CameraProSession session) {
         // if the manifest does not contain the camera permissions key, we don't need to ask the user
         boolean needCameraProPerms = isPermissionDeclared(CAMERA);
         boolean hasCameraProPerms = !needCameraProPerms || getPermissionState(CAMERA) == PermissionState.GRANTED;
         boolean hasPhotoPerms = getPermissionState(PHOTOS) == PermissionState.GRANTED;
 
         // If we want to save to the gallery, we need two permissions
-        if (settings.isSaveToGallery() && !(hasCameraProPerms && hasPhotoPerms) && isFirstRequest) {
+        if (session.getVideoSettings().isSaveToGallery() && !(hasCameraProPerms && hasPhotoPerms) && isFirstRequest) {
             isFirstRequest = false;
             String[] aliases;
             if (needCameraProPerms) {
@@ -295,22 +523,31 @@ public class CameraProPlugin extends Plugin {
      */
     @PermissionCallback
     private void cameraPermissionsCallback(PluginCall call) {
+        CameraProSession session = getSession(call);
+        CameraProSettings settings = session.getSettings();
         if (call.getMethodName().equals("pickImages")) {
             openPhotos(call, true, true);
+        } else if (call.getMethodName().equals("pickVideos")) {
+            if (getPermissionState(PHOTOS) != PermissionState.GRANTED) {
+                Logger.debug(getLogTag(), "User denied photos permission: " + getPermissionState(PHOTOS).toString());
+                rejectCall(call, PERMISSION_DENIED_ERROR_PHOTOS);
+                return;
+            }
+            showVideoLibrary(call, true, true);
         } else {
             if (settings.getSource() == CameraProSource.CAMERA && getPermissionState(CAMERA) != PermissionState.GRANTED) {
                 Logger.debug(getLogTag(), "User denied camera permission: " + getPermissionState(CAMERA).toString());
-                call.reject(PERMISSION_DENIED_ERROR_CAMERA);
+                rejectCall(call, PERMISSION_DENIED_ERROR_CAMERA);
                 return;
             } else if (settings.getSource() == CameraProSource.PHOTOS && getPermissionState(PHOTOS) != PermissionState.GRANTED) {
                 Logger.debug(getLogTag(), "User denied photos permission: " + getPermissionState(PHOTOS).toString());
-                call.reject(PERMISSION_DENIED_ERROR_PHOTOS);
+                rejectCall(call, PERMISSION_DENIED_ERROR_PHOTOS);
                 return;
             }
             if (call.getMethodName().equals("getVideo")) {
-                doVideoShow(call);
+                doVideoShow(call, session);
             } else {
-                doShow(call);
+                doShow(call, session);
             }
         }
     }
@@ -324,7 +561,15 @@ public class CameraProPlugin extends Plugin {
         settings.setWidth(call.getInt("width", 0));
         settings.setHeight(call.getInt("height", 0));
         settings.setShouldResize(settings.getWidth() > 0 || settings.getHeight() > 0);
+        settings.setResizeQuality(getResizeQuality(call.getString("resizeQuality")));
         settings.setShouldCorrectOrientation(call.getBoolean("correctOrientation", CameraProSettings.DEFAULT_CORRECT_ORIENTATION));
+        settings.setProgressive(call.getBoolean("progressive", false));
+        settings.setPreview(call.getBoolean("preview", false));
+        settings.setMetrics(call.getBoolean("metrics", false));
+        settings.setExifTags(getExifTags(call));
+        settings.setFormat(getOutputFormat(call.getString("format")));
+        settings.setMaxBytes(call.getInt("maxBytes", 0));
+        settings.setDerivatives(getDerivatives(call, settings));
         try {
             settings.setSource(CameraProSource.valueOf(call.getString("source", CameraProSource.PROMPT.getSource())));
         } catch (IllegalArgumentException ex) {
@@ -333,6 +578,33 @@ public class CameraProPlugin extends Plugin {
         return settings;
     }
 
+    /**
+     * Read the exifTags option, either a preset name or an explicit list of tags
+     * @param call
+     * @return the tags to read, null for all of them
+     */
+    private String[] getExifTags(PluginCall call) {
+        Object exifTags = call.getData().opt("exifTags");
+        if (exifTags instanceof String) {
+            String[] tags = ExifWrapper.resolveTags((String) exifTags);
+            if (tags == null) {
+                Logger.debug(getLogTag(), "Invalid exifTags \"" + exifTags + "\", defaulting to full");
+            }
+            return tags;
+        } else if (exifTags instanceof JSONArray) {
+            JSONArray tagArray = (JSONArray) exifTags;
+            List<String> tags = new ArrayList<>();
+            for (int i = 0; i < tagArray.length(); i++) {
+                String tag = tagArray.optString(i);
+                if (tag != null && !tag.isEmpty()) {
+                    tags.add(tag);
+                }
+            }
+            return tags.toArray(new String[0]);
+        }
+        return null;
+    }
+
     private CameraProResultType getResultType(String resultType) {
         if (resultType == null) {
             return null;
@@ -345,52 +617,127 @@ public class CameraProPlugin extends Plugin {
         }
     }
 
+    private CameraProResizeQuality getResizeQuality(String resizeQuality) {
+        if (resizeQuality == null) {
+            return CameraProResizeQuality.SPEED;
+        }
+        try {
+            return CameraProResizeQuality.valueOf(resizeQuality.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            Logger.debug(getLogTag(), "Invalid resize quality \"" + resizeQuality + "\", defaulting to speed");
+            return CameraProResizeQuality.SPEED;
+        }
+    }
+
+    private List<CameraProDerivative> getDerivatives(PluginCall call, CameraProSettings settings) {
+        List<CameraProDerivative> derivatives = new ArrayList<>();
+        JSONArray targets = call.getData().optJSONArray("derivatives");
+        if (targets == null) {
+            return derivatives;
+        }
+        for (int i = 0; i < targets.length(); i++) {
+            JSONObject target = targets.optJSONObject(i);
+            if (target == null) {
+                continue;
+            }
+            CameraProDerivative derivative = new CameraProDerivative();
+            derivative.setWidth(target.optInt("width", 0));
+            derivative.setHeight(target.optInt("height", 0));
+            derivative.setQuality(target.optInt("quality", settings.getQuality()));
+            derivative.setFormat(target.has("format") ? getOutputFormat(target.optString("format")) : settings.getFormat());
+            derivatives.add(derivative);
+        }
+        return derivatives;
+    }
+
+    private CameraProOutputFormat getOutputFormat(String format) {
+        if (format == null) {
+            return CameraProOutputFormat.JPEG;
+        }
+        CameraProOutputFormat outputFormat = CameraProOutputFormat.fromOption(format);
+        if (outputFormat == null) {
+            Logger.debug(getLogTag(), "Invalid format \"" + format + "\", defaulting to jpeg");
+            return CameraProOutputFormat.JPEG;
+        }
+        CameraProOutputFormat resolved = outputFormat.resolve();
+        if (resolved != outputFormat) {
+            Logger.debug(getLogTag(), "Format \"" + format + "\" is not supported on this device, using jpeg");
+        }
+        return resolved;
+    }
+
     private CameraProVideoSettings getVideoSettings(PluginCall call) {
         CameraProVideoSettings settings = new CameraProVideoSettings();
         settings.setSaveToGallery(call.getBoolean("saveToGallery", CameraProVideoSettings.DEFAULT_SAVE_VIDEO_TO_GALLERY));
         settings.setDuration(call.getInt("duration", CameraProVideoSettings.DEFAULT_DURATION));
         settings.setHighquality(call.getBoolean("highquality", CameraProVideoSettings.DEFAULT_QUALITY));
+        JSObject thumbnails = call.getObject("thumbnails");
+        if (thumbnails != null) {
+            settings.setThumbnails(getThumbnailSettings(thumbnails));
+        }
+        return settings;
+    }
+
+    private CameraProThumbnailSettings getThumbnailSettings(JSONObject options) {
+        CameraProThumbnailSettings settings = new CameraProThumbnailSettings();
+        int keyframes = options.optInt("keyframes", CameraProThumbnailSettings.DEFAULT_KEYFRAMES);
+        settings.setKeyframes(Math.max(0, Math.min(keyframes, CameraProThumbnailSettings.MAX_KEYFRAMES)));
+        settings.setWidth(options.optInt("width", 0));
+        settings.setHeight(options.optInt("height", 0));
+        settings.setQuality(options.optInt("quality", CameraProThumbnailSettings.DEFAULT_QUALITY));
         return settings;
     }
 
     public void openCamera(final PluginCall call) {
-        if (checkCameraPermissions(call)) {
+        openCamera(call, getSession(call));
+    }
+
+    private void openCamera(final PluginCall call, final CameraProSession session) {
+        if (checkCameraPermissions(call, session)) {
             Intent takePictureIntent = new Intent(MediaStore.ACTION_IMAGE_CAPTURE);
             if (takePictureIntent.resolveActivity(getContext().getPackageManager()) != null) {
                 // If we will be saving the photo, send the target file along
                 try {
                     String appId = getAppId();
                     File photoFile = CameraProUtils.createImageFile(getActivity());
-                    imageFileSavePath = photoFile.getAbsolutePath();
+                    session.setImageFileSavePath(photoFile.getAbsolutePath());
                     // TODO: Verify provider config exists
-                    imageFileUri = FileProvider.getUriForFile(getActivity(), appId + ".fileprovider", photoFile);
+                    Uri imageFileUri = FileProvider.getUriForFile(getActivity(), appId + ".fileprovider", photoFile);
+                    session.setImageFileUri(imageFileUri);
                     takePictureIntent.putExtra(MediaStore.EXTRA_OUTPUT, imageFileUri);
                 } catch (Exception ex) {
-                    call.reject(IMAGE_FILE_SAVE_ERROR, ex);
+                    rejectCall(call, IMAGE_FILE_SAVE_ERROR, ex);
                     return;
                 }
 
+                session.getTimings().startActivity();
                 startActivityForResult(call, takePictureIntent, "processCameraImage");
             } else {
-                call.reject(NO_CAMERA_ACTIVITY_ERROR);
+                rejectCall(call, NO_CAMERA_ACTIVITY_ERROR);
             }
         }
     }
 
     public void openVideoCamera(final PluginCall call) {
-        if (checkVideoCameraPermissions(call)) {
+        openVideoCamera(call, getSession(call));
+    }
+
+    private void openVideoCamera(final PluginCall call, final CameraProSession session) {
+        CameraProVideoSettings videoSettings = session.getVideoSettings();
+        if (checkVideoCameraPermissions(call, session)) {
             Intent takeVideoIntent = new Intent(MediaStore.ACTION_VIDEO_CAPTURE);
             if (takeVideoIntent.resolveActivity(getContext().getPackageManager()) != null) {
                 // If we will be saving the photo, send the target file along
                 try {
                     String appId = getAppId();
                     File videoFile = CameraProUtils.createVideoFile(getActivity());
-                    videoFileSavePath = videoFile.getAbsolutePath();
+                    session.setVideoFileSavePath(videoFile.getAbsolutePath());
                     // TODO: Verify provider config exists
-                    videoFileUri = FileProvider.getUriForFile(getActivity(), appId + ".fileprovider", videoFile);
+                    Uri videoFileUri = FileProvider.getUriForFile(getActivity(), appId + ".fileprovider", videoFile);
+                    session.setVideoFileUri(videoFileUri);
                     takeVideoIntent.putExtra(MediaStore.EXTRA_OUTPUT, videoFileUri);
                 } catch (Exception ex) {
-                    call.reject(IMAGE_FILE_SAVE_ERROR, ex);
+                    rejectCall(call, IMAGE_FILE_SAVE_ERROR, ex);
                     return;
                 }
 
@@ -407,7 +754,7 @@ public class CameraProPlugin extends Plugin {
 
                 startActivityForResult(call, takeVideoIntent, "processCameraVideo");
             } else {
-                call.reject(NO_CAMERA_ACTIVITY_ERROR);
+                rejectCall(call, NO_CAMERA_ACTIVITY_ERROR);
             }
         }
     }
@@ -421,6 +768,7 @@ public class CameraProPlugin extends Plugin {
             Intent intent = new Intent(Intent.ACTION_PICK);
             intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, multiple);
             intent.setType("image/*");
+            getSession(call).getTimings().startActivity();
             try {
                 if (multiple) {
                     intent.putExtra("multi-pick", multiple);
@@ -430,7 +778,7 @@ public class CameraProPlugin extends Plugin {
                     startActivityForResult(call, intent, "processPickedImage");
                 }
             } catch (ActivityNotFoundException ex) {
-                call.reject(NO_PHOTO_ACTIVITY_ERROR);
+                rejectCall(call, NO_PHOTO_ACTIVITY_ERROR);
             }
         }
     }
@@ -453,311 +801,838 @@ public class CameraProPlugin extends Plugin {
                     startActivityForResult(call, intent, "processPickedVideo");
                 }
             } catch (ActivityNotFoundException ex) {
-                call.reject(NO_VIDEO_ACTIVITY_ERROR);
+                rejectCall(call, NO_VIDEO_ACTIVITY_ERROR);
             }
         }
     }
 
     @ActivityCallback
     public void processCameraImage(PluginCall call, ActivityResult result) {
-        settings = getSettings(call);
-        if (imageFileSavePath == null) {
-            call.reject(IMAGE_PROCESS_NO_FILE_ERROR);
-            return;
-        }
-        // Load the image as a Bitmap
-        File f = new File(imageFileSavePath);
-        BitmapFactory.Options bmOptions = new BitmapFactory.Options();
-        Uri contentUri = Uri.fromFile(f);
-        Bitmap bitmap = BitmapFactory.decodeFile(imageFileSavePath, bmOptions);
+        CameraProSession session = getSession(call);
+        session.getTimings().stopActivity(CameraProStage.INTENT);
+        processCameraImage(call, session);
+    }
 
-        if (bitmap == null) {
-            call.reject("User cancelled photos app");
+    private void processCameraImage(PluginCall call, CameraProSession session) {
+        if (session.getImageFileSavePath() == null) {
+            rejectCall(call, IMAGE_PROCESS_NO_FILE_ERROR);
             return;
         }
-
-        returnResult(call, bitmap, contentUri);
+        File f = new File(session.getImageFileSavePath());
+        Uri contentUri = Uri.fromFile(f);
+        processImage(call, session, contentUri, "User cancelled photos app", "User cancelled photos app");
     }
 
     @ActivityCallback
     public void processCameraVideo(PluginCall call, ActivityResult result) {
-        videoSettings = getVideoSettings(call);
-        if (videoFileSavePath == null) {
-            call.reject(VIDEO_PROCESS_NO_FILE_ERROR);
+        CameraProSession session = getSession(call);
+        if (session.getVideoFileSavePath() == null) {
+            rejectCall(call, VIDEO_PROCESS_NO_FILE_ERROR);
             return;
         }
         // // Load the image as a Bitmap
-        File f = new File(videoFileSavePath);
+        File f = new File(session.getVideoFileSavePath());
         Uri contentUri = Uri.fromFile(f);
-        returnVideoResult(call, contentUri);
+        returnVideoResult(call, session, contentUri);
     }
 
     @ActivityCallback
     public void processPickedImage(PluginCall call, ActivityResult result) {
-        settings = getSettings(call);
+        CameraProSession session = getSession(call);
+        session.getTimings().stopActivity(CameraProStage.INTENT);
+        processPickedImage(call, session, result);
+    }
+
+    private void processPickedImage(PluginCall call, CameraProSession session, ActivityResult result) {
         Intent data = result.getData();
         if (data == null) {
-            call.reject("No image picked");
+            rejectCall(call, "No image picked");
             return;
         }
 
         Uri u = data.getData();
 
-        imagePickedContentUri = u;
+        session.setImagePickedContentUri(u);
 
-        processPickedImage(u, call);
+        processPickedImage(u, call, session);
     }
 
     @ActivityCallback
     public void processPickedVideo(PluginCall call, ActivityResult result) {
-        videoSettings = getVideoSettings(call);
+        CameraProSession session = getSession(call);
         Intent data = result.getData();
         if (data == null) {
-            call.reject("No video picked");
+            rejectCall(call, "No video picked");
             return;
         }
         Uri u = data.getData();
-        processPickedVideo(u, call);
+        session.setVideoPickedContentUri(u);
+        processPickedVideo(u, call, session);
     }
 
     @ActivityCallback
     public void processPickedImages(PluginCall call, ActivityResult result) {
+        CameraProSession session = getSession(call);
+        session.getTimings().stopActivity(CameraProStage.INTENT);
         Intent data = result.getData();
         if (data != null) {
-            Executor executor = Executors.newSingleThreadExecutor();
-            executor.execute(
-                () -> {
-                    JSObject ret = new JSObject();
-                    JSArray photos = new JSArray();
-                    if (data.getClipData() != null) {
-                        int count = data.getClipData().getItemCount();
-                        for (int i = 0; i < count; i++) {
-                            Uri imageUri = data.getClipData().getItemAt(i).getUri();
-                            JSObject processResult = processPickedImages(imageUri);
-                            if (processResult.getString("error") != null && !processResult.getString("error").isEmpty()) {
-                                call.reject(processResult.getString("error"));
-                                return;
-                            } else {
-                                photos.put(processResult);
-                            }
-                        }
-                    } else if (data.getData() != null) {
-                        Uri imageUri = data.getData();
-                        JSObject processResult = processPickedImages(imageUri);
-                        if (processResult.getString("error") != null && !processResult.getString("error").isEmpty()) {
-                            call.reject(processResult.getString("error"));
-                            return;
-                        } else {
-                            photos.put(processResult);
-                        }
-                    } else if (data.getExtras() != null) {
-                        Bundle bundle = data.getExtras();
-                        if (bundle.keySet().contains("selectedItems")) {
-                            ArrayList<Parcelable> fileUris = bundle.getParcelableArrayList("selectedItems");
-                            if (fileUris != null) {
-                                for (Parcelable fileUri : fileUris) {
-                                    if (fileUri instanceof Uri) {
-                                        Uri imageUri = (Uri) fileUri;
-                                        try {
-                                            JSObject processResult = processPickedImages(imageUri);
-                                            if (processResult.getString("error") != null && !processResult.getString("error").isEmpty()) {
-                                                call.reject(processResult.getString("error"));
-                                                return;
-                                            } else {
-                                                photos.put(processResult);
-                                            }
-                                        } catch (SecurityException ex) {
-                                            call.reject("SecurityException");
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    ret.put("photos", photos);
-                    call.resolve(ret);
-                }
-            );
+            processPickedImages(call, session, getPickedUris(data));
         } else {
-            call.reject("No images picked");
+            rejectCall(call, "No images picked");
         }
     }
 
-    private void processPickedImage(Uri imageUri, PluginCall call) {
-        InputStream imageStream = null;
-
-        try {
-            imageStream = getContext().getContentResolver().openInputStream(imageUri);
-            Bitmap bitmap = BitmapFactory.decodeStream(imageStream);
-
-            if (bitmap == null) {
-                call.reject("Unable to process bitmap");
-                return;
+    /**
+     * Get the uris picked in a multiple selection, in the order they were picked. Pickers
+     * return them as clip data, as a single uri when only one was picked, or as the
+     * selectedItems extra for some gallery apps.
+     * @param data
+     * @return
+     */
+    private List<Uri> getPickedUris(Intent data) {
+        List<Uri> uris = new ArrayList<>();
+        if (data.getClipData() != null) {
+            int count = data.getClipData().getItemCount();
+            for (int i = 0; i < count; i++) {
+                uris.add(data.getClipData().getItemAt(i).getUri());
             }
-
-            returnResult(call, bitmap, imageUri);
-        } catch (OutOfMemoryError err) {
-            call.reject("Out of memory");
-        } catch (FileNotFoundException ex) {
-            call.reject("No such image found", ex);
-        } finally {
-            if (imageStream != null) {
-                try {
-                    imageStream.close();
-                } catch (IOException e) {
-                    Logger.error(getLogTag(), UNABLE_TO_PROCESS_IMAGE, e);
+        } else if (data.getData() != null) {
+            uris.add(data.getData());
+        } else if (data.getExtras() != null) {
+            Bundle bundle = data.getExtras();
+            if (bundle.keySet().contains("selectedItems")) {
+                ArrayList<Parcelable> fileUris = bundle.getParcelableArrayList("selectedItems");
+                if (fileUris != null) {
+                    for (Parcelable fileUri : fileUris) {
+                        if (fileUri instanceof Uri) {
+                            uris.add((Uri) fileUri);
+                        }
+                    }
                 }
             }
         }
+        return uris;
     }
 
-    private void processPickedVideo(Uri videoUri, PluginCall call) {
-        try {
-            returnVideoResult(call, videoUri);
-        } catch (OutOfMemoryError err) {
-            call.reject("Out of memory");
-            Logger.error(getLogTag(), UNABLE_TO_PROCESS_VIDEO,err);
+    @ActivityCallback
+    public void processPickedVideos(PluginCall call, ActivityResult result) {
+        CameraProSession session = getSession(call);
+        Intent data = result.getData();
+        if (data != null) {
+            processPickedVideos(call, session, getPickedUris(data));
+        } else {
+            rejectCall(call, "No videos picked");
         }
     }
 
-    private JSObject processPickedImages(Uri imageUri) {
-        InputStream imageStream = null;
-        JSObject ret = new JSObject();
-        try {
-            imageStream = getContext().getContentResolver().openInputStream(imageUri);
-            Bitmap bitmap = BitmapFactory.decodeStream(imageStream);
-
-            if (bitmap == null) {
-                ret.put("error", "Unable to process bitmap");
-                return ret;
-            }
+    /**
+     * Read the metadata and extract the thumbnails of every picked video on the processing
+     * pool. Like the image batch, results are stored by their selection index and the call
+     * is resolved by whichever task finishes last, in the order the user picked the videos.
+     * A video whose metadata or thumbnails can't be read is still returned, without them,
+     * any other failure rejects the call. The batch is cancelled when the plugin is destroyed.
+     * @param call
+     * @param session
+     * @param videoUris
+     */
+    private void processPickedVideos(final PluginCall call, final CameraProSession session, final List<Uri> videoUris) {
+        final int count = videoUris.size();
+        if (count == 0) {
+            endSession(session);
+            JSObject ret = new JSObject();
+            ret.put("videos", new JSArray());
+            call.resolve(ret);
+            return;
+        }
 
-            ExifWrapper exif = ImageUtils.getExifData(getContext(), bitmap, imageUri);
-            try {
-                bitmap = prepareBitmap(bitmap, imageUri, exif);
-            } catch (IOException e) {
-                ret.put("error", UNABLE_TO_PROCESS_IMAGE);
-                return ret;
-            }
-            // Compress the final image and prepare for output to client
-            ByteArrayOutputStream bitmapOutputStream = new ByteArrayOutputStream();
-            bitmap.compress(Bitmap.CompressFormat.JPEG, settings.getQuality(), bitmapOutputStream);
-
-            Uri newUri = getTempImage(imageUri, bitmapOutputStream);
-            exif.copyExif(newUri.getPath());
-            if (newUri != null) {
-                ret.put("format", "jpeg");
-                ret.put("exif", exif.toJson());
-                ret.put("path", newUri.toString());
-                ret.put("webPath", FileUtils.getPortablePath(getContext(), bridge.getLocalUrl(), newUri));
-            } else {
-                ret.put("error", UNABLE_TO_PROCESS_IMAGE);
-            }
-            return ret;
-        } catch (OutOfMemoryError err) {
-            ret.put("error", "Out of memory");
-        } catch (FileNotFoundException ex) {
-            ret.put("error", "No such image found");
-            Logger.error(getLogTag(), "No such image found", ex);
-        } finally {
-            if (imageStream != null) {
-                try {
-                    imageStream.close();
-                } catch (IOException e) {
-                    Logger.error(getLogTag(), UNABLE_TO_PROCESS_IMAGE, e);
+        final CameraProThumbnailSettings thumbnails = session.getVideoSettings().getThumbnails();
+        final JSObject[] results = new JSObject[count];
+        final AtomicInteger remaining = new AtomicInteger(count);
+        final AtomicBoolean finished = new AtomicBoolean(false);
+        final String callbackId = call.getCallbackId();
+        // Never run, it only stands for the batch in imageTasks so handleOnDestroy can cancel it
+        final FutureTask<Void> batch = new FutureTask<Void>(() -> {}, null) {
+            @Override
+            protected void done() {
+                imageTasks.remove(callbackId, this);
+                if (isCancelled() && finished.compareAndSet(false, true)) {
+                    rejectCall(call, VIDEO_PROCESS_CANCELLED_ERROR);
                 }
             }
-        }
-        return ret;
-    }
-
-    @ActivityCallback
-    private void processEditedImage(PluginCall call, ActivityResult result) {
-        isEdited = true;
-        settings = getSettings(call);
-        if (result.getResultCode() == Activity.RESULT_CANCELED) {
-            // User cancelled the edit operation, if this file was picked from photos,
-            // process the original picked image, otherwise process it as a camera photo
-            if (imagePickedContentUri != null) {
-                processPickedImage(imagePickedContentUri, call);
-            } else {
-                processCameraImage(call, result);
+        };
+        imageTasks.put(callbackId, batch);
+        ThreadPoolExecutor executor = getProcessingExecutor();
+        try {
+            for (int i = 0; i < count; i++) {
+                final int index = i;
+                executor.execute(
+                    () -> {
+                        if (finished.get()) {
+                            return;
+                        }
+                        Uri uri = videoUris.get(index);
+                        try {
+                            JSObject video = createVideoResult(session, uri);
+                            if (thumbnails != null) {
+                                putOptionalVideoThumbnails(video, uri, thumbnails, session.getCallId());
+                            }
+                            results[index] = video;
+                        } catch (RuntimeException ex) {
+                            Logger.error(getLogTag(), UNABLE_TO_PROCESS_VIDEO, ex);
+                            if (finished.compareAndSet(false, true)) {
+                                imageTasks.remove(callbackId, batch);
+                                rejectCall(call, UNABLE_TO_PROCESS_VIDEO, ex);
+                            }
+                            return;
+                        }
+                        if (remaining.decrementAndGet() == 0 && finished.compareAndSet(false, true)) {
+                            imageTasks.remove(callbackId, batch);
+                            JSArray videos = new JSArray();
+                            for (JSObject result : results) {
+                                videos.put(result);
+                            }
+                            endSession(session);
+                            JSObject ret = new JSObject();
+                            ret.put("videos", videos);
+                            call.resolve(ret);
+                        }
+                    }
+                );
+            }
+        } catch (RejectedExecutionException ex) {
+            // The plugin is being destroyed, the videos already queued see the batch finished
+            if (finished.compareAndSet(false, true)) {
+                imageTasks.remove(callbackId, batch);
+                rejectCall(call, UNABLE_TO_PROCESS_VIDEO, ex);
             }
-        } else {
-            processPickedImage(call, result);
         }
     }
 
     /**
-     * Save the modified image on the same path,
-     * or on a temporary location if it's a content url
-     * @param uri
-     * @param is
-     * @return
-     * @throws IOException
+     * Process every picked image on the processing pool. Results are stored by their
+     * selection index and the call is resolved by whichever task finishes last, so the
+     * returned photos keep the order the user picked them in.
+     *
+     * In progressive mode every image is sent in a pickImagesProgress event as soon as it
+     * is ready, a failing image doesn't stop the batch, and the call resolves with a summary.
+     * Like the video batch, it is cancelled when the plugin is destroyed.
+     * @param call
+     * @param session
+     * @param imageUris
      */
-    private Uri saveImage(Uri uri, InputStream is) throws IOException {
-        File outFile = null;
-        if (uri.getScheme().equals("content")) {
-            outFile = getTempFile(uri);
-        } else {
-            outFile = new File(uri.getPath());
+    private void processPickedImages(final PluginCall call, final CameraProSession session, final List<Uri> imageUris) {
+        final int count = imageUris.size();
+        final boolean progressive = session.getSettings().isProgressive();
+        if (count == 0) {
+            endSession(session);
+            JSObject ret = createPickedImagesResult(call, new JSArray(), progressive, count, 0, 0);
+            finishTimings(session, ret);
+            call.resolve(ret);
+            return;
         }
+
+        final long batchStart = SystemClock.elapsedRealtime();
+        final JSObject[] results = new JSObject[count];
+        final AtomicInteger remaining = new AtomicInteger(count);
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicBoolean finished = new AtomicBoolean(false);
+        final String callbackId = call.getCallbackId();
+        // Never run, it only stands for the batch in imageTasks so handleOnDestroy can cancel it
+        final FutureTask<Void> batch = new FutureTask<Void>(() -> {}, null) {
+            @Override
+            protected void done() {
+                imageTasks.remove(callbackId, this);
+                if (isCancelled() && finished.compareAndSet(false, true)) {
+                    rejectCall(call, IMAGE_PROCESS_CANCELLED_ERROR);
+                }
+            }
+        };
+        imageTasks.put(callbackId, batch);
+        ThreadPoolExecutor executor = getProcessingExecutor();
+        session.setProcessingExecutor(executor);
         try {
-            writePhoto(outFile, is);
-        } catch (FileNotFoundException ex) {
-            // Some gallery apps return read only file url, create a temporary file for modifications
-            outFile = getTempFile(uri);
-            writePhoto(outFile, is);
+            for (int i = 0; i < count; i++) {
+                final int index = i;
+                executor.execute(
+                    () -> {
+                        if (finished.get()) {
+                            return;
+                        }
+                        final long start = SystemClock.elapsedRealtime();
+                        JSObject processResult;
+                        try {
+                            processResult = processPickedImages(session, imageUris.get(index));
+                        } catch (SecurityException ex) {
+                            processResult = new JSObject();
+                            processResult.put("error", "SecurityException");
+                        } catch (RuntimeException ex) {
+                            Logger.error(getLogTag(), UNABLE_TO_PROCESS_IMAGE, ex);
+                            processResult = new JSObject();
+                            processResult.put("error", UNABLE_TO_PROCESS_IMAGE);
+                        }
+                        if (finished.get()) {
+                            // Cancelled while processing, the call was already rejected
+                            return;
+                        }
+                        String error = processResult.getString("error");
+                        boolean hasError = error != null && !error.isEmpty();
+                        if (progressive) {
+                            if (hasError) {
+                                failed.incrementAndGet();
+                            }
+                            // Tells apart the events of overlapping pickImages calls
+                            processResult.put("callbackId", callbackId);
+                            processResult.put("index", index);
+                            processResult.put("total", count);
+                            processResult.put("duration", SystemClock.elapsedRealtime() - start);
+                            notifyListeners(PICK_IMAGES_PROGRESS_EVENT, processResult);
+                        } else if (hasError) {
+                            if (finished.compareAndSet(false, true)) {
+                                imageTasks.remove(callbackId, batch);
+                                rejectCall(call, error);
+                            }
+                            return;
+                        } else {
+                            results[index] = processResult;
+                        }
+                        if (remaining.decrementAndGet() == 0 && finished.compareAndSet(false, true)) {
+                            imageTasks.remove(callbackId, batch);
+                            JSArray photos = new JSArray();
+                            if (!progressive) {
+                                for (JSObject photo : results) {
+                                    photos.put(photo);
+                                }
+                            }
+                            long duration = SystemClock.elapsedRealtime() - batchStart;
+                            endSession(session);
+                            JSObject ret = createPickedImagesResult(call, photos, progressive, count, failed.get(), duration);
+                            finishTimings(session, ret);
+                            call.resolve(ret);
+                        }
+                    }
+                );
+            }
+        } catch (RejectedExecutionException ex) {
+            // The plugin is being destroyed, the images already queued see the batch finished
+            if (finished.compareAndSet(false, true)) {
+                imageTasks.remove(callbackId, batch);
+                rejectCall(call, UNABLE_TO_PROCESS_IMAGE, ex);
+            }
         }
-        return Uri.fromFile(outFile);
     }
 
-    private void writePhoto(File outFile, InputStream is) throws IOException {
-        FileOutputStream fos = new FileOutputStream(outFile);
-        byte[] buffer = new byte[1024];
-        int len;
-        while ((len = is.read(buffer)) != -1) {
-            fos.write(buffer, 0, len);
+    private JSObject createPickedImagesResult(
+        PluginCall call,
+        JSArray photos,
+        boolean progressive,
+        int total,
+        int failed,
+        long duration
+    ) {
+        JSObject ret = new JSObject();
+        ret.put("photos", photos);
+        if (progressive) {
+            ret.put("callbackId", call.getCallbackId());
+            ret.put("total", total);
+            ret.put("failed", failed);
+            ret.put("duration", duration);
         }
-        fos.close();
+        return ret;
     }
 
-    private File getTempFile(Uri uri) {
-        String filename = Uri.parse(Uri.decode(uri.toString())).getLastPathSegment();
-        if (!filename.contains(".jpg") && !filename.contains(".jpeg")) {
-            filename += "." + (new java.util.Date()).getTime() + ".jpeg";
-        }
-        File cacheDir = getContext().getCacheDir();
-        return new File(cacheDir, filename);
+    private void processPickedImage(Uri imageUri, PluginCall call, CameraProSession session) {
+        processImage(call, session, imageUri, "No such image found", "Unable to process bitmap");
     }
 
     /**
-     * After processing the image, return the final result back to the caller.
+     * Open and process an image on the processing pool and return it to the caller, keeping
+     * the open, which may read the whole image from a provider, the decode, compress and
+     * write off the main thread. When a preview is requested, the thumbnail embedded in the
+     * image is sent first.
      * @param call
-     * @param bitmap
-     * @param u
+     * @param session
+     * @param imageUri
+     * @param openError the error to reject with if the image can't be opened
+     * @param decodeError the error to reject with if the image can't be decoded
      */
-    private void returnResult(PluginCall call, Bitmap bitmap, Uri u) {
-        ExifWrapper exif = ImageUtils.getExifData(getContext(), bitmap, u);
+    private void processImage(
+        final PluginCall call,
+        final CameraProSession session,
+        final Uri imageUri,
+        final String openError,
+        final String decodeError
+    ) {
+        final String callbackId = call.getCallbackId();
+        FutureTask<Void> task = new FutureTask<Void>(
+            () -> {
+                ImageSource source;
+                try {
+                    source = ImageSource.open(getContext(), imageUri);
+                } catch (FileNotFoundException | RuntimeException ex) {
+                    rejectCall(call, openError, ex);
+                    return;
+                }
+                processSource(call, session, source, decodeError);
+            },
+            null
+        ) {
+            @Override
+            protected void done() {
+                imageTasks.remove(callbackId, this);
+                if (isCancelled()) {
+                    // A running task closes its source itself once it notices the interrupt
+                    rejectCall(call, IMAGE_PROCESS_CANCELLED_ERROR);
+                }
+            }
+        };
+        imageTasks.put(callbackId, task);
         try {
-            bitmap = prepareBitmap(bitmap, u, exif);
-        } catch (IOException e) {
-            call.reject(UNABLE_TO_PROCESS_IMAGE);
-            return;
+            ThreadPoolExecutor executor = getProcessingExecutor();
+            session.setProcessingExecutor(executor);
+            executor.execute(task);
+        } catch (RejectedExecutionException ex) {
+            imageTasks.remove(callbackId, task);
+            rejectCall(call, UNABLE_TO_PROCESS_IMAGE, ex);
         }
-        // Compress the final image and prepare for output to client
-        ByteArrayOutputStream bitmapOutputStream = new ByteArrayOutputStream();
-        bitmap.compress(Bitmap.CompressFormat.JPEG, settings.getQuality(), bitmapOutputStream);
+    }
 
-        if (settings.isAllowEditing() && !isEdited) {
-            editImage(call, u, bitmapOutputStream);
-            return;
-        }
+    private void processSource(PluginCall call, CameraProSession session, ImageSource source, String decodeError) {
+        PixelMemoryBudget.Reservation pixels = pixelBudget.newReservation();
+        Bitmap bitmap = null;
+        try {
+            if (shouldPreview(session)) {
+                // Rotated and encoded here, off the main thread, before the image is decoded
+                notifyPreview(call, session, source);
+            }
+            String resultKey = getResultKey(session, source);
+            if (resultKey != null) {
+                returnCachedResult(call, session, source, resultKey, decodeError);
+                return;
+            }
+            if (canReturnOriginal(session, source)) {
+                returnOriginal(call, session, source);
+                return;
+            }
+            // Load the image as a Bitmap, subsampled to what the requested size needs
+            ExifWrapper exif = readExif(session, source);
+            AtomicBoolean degraded = new AtomicBoolean(false);
+            bitmap = loadImage(session, source, exif, pixels, degraded);
 
-        boolean saveToGallery = call.getBoolean("saveToGallery", CameraProSettings.DEFAULT_SAVE_IMAGE_TO_GALLERY);
+            if (bitmap == null) {
+                rejectCall(call, decodeError);
+                return;
+            }
+            if (isProcessingCancelled()) {
+                return;
+            }
+
+            session.setDegraded(degraded.get());
+            returnResult(call, session, bitmap, source, exif);
+        } catch (OutOfMemoryError err) {
+            memory.onOutOfMemory();
+            rejectCall(call, "Out of memory");
+        } catch (InterruptedException ex) {
+            // Cancelled while waiting for memory, the call was rejected then
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException ex) {
+            // The task runs in a FutureTask, anything not caught here would be swallowed
+            // and leave the call pending
+            Logger.error(getLogTag(), UNABLE_TO_PROCESS_IMAGE, ex);
+            rejectCall(call, UNABLE_TO_PROCESS_IMAGE, ex);
+        } finally {
+            // The pixels are given back to the budget only once they are freed
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+            pixels.close();
+            source.close();
+        }
+    }
+
+    /**
+     * Return the file result of the image from the result cache, processing it only if it
+     * wasn't processed with the same settings before
+     * @param call
+     * @param session
+     * @param source
+     * @param resultKey
+     * @param decodeError the error to reject with if the image can't be decoded
+     */
+    private void returnCachedResult(PluginCall call, CameraProSession session, ImageSource source, String resultKey, String decodeError) {
+        JSObject ret = getCachedResult(session, source, resultKey, decodeError);
+        if (isProcessingCancelled()) {
+            return;
+        }
+        if (ret.has("error")) {
+            rejectCall(call, ret.getString("error"));
+            return;
+        }
+        ret.put("saved", session.isSaved());
+        finishTimings(session, ret);
+        call.resolve(ret);
+        clearImageState(session);
+    }
+
+    /**
+     * Get the key of the image result in the result cache
+     * @param session
+     * @param source
+     * @return the key, or null if the result can't be reused: it's not a file, the image is
+     * edited or saved to the gallery, or its content can't be identified
+     */
+    private String getResultKey(CameraProSession session, ImageSource source) {
+        CameraProSettings settings = session.getSettings();
+        if (settings.getResultType() != CameraProResultType.URI || settings.isAllowEditing() || settings.isSaveToGallery()) {
+            return null;
+        }
+        String fingerprint = source.getFingerprint();
+        if (fingerprint == null) {
+            return null;
+        }
+        return CameraProResultCache.getKey(source.getUri().toString(), fingerprint, settings);
+    }
+
+    private JSObject getCachedResult(final CameraProSession session, final ImageSource source, String resultKey, final String decodeError) {
+        JSObject ret;
+        try {
+            ret = resultCache.get(resultKey, () -> processToFile(session, source, decodeError));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            ret = new JSObject();
+            ret.put("error", IMAGE_PROCESS_CANCELLED_ERROR);
+            return ret;
+        }
+        // A reused result is as recent as a new one
+        for (String path : CameraProResultCache.getPaths(ret)) {
+            cache.touch(new File(path), session.getCallId());
+        }
+        return ret;
+    }
+
+    /**
+     * Check if the image processed on this thread was cancelled, the call has been rejected then
+     * @return
+     */
+    private boolean isProcessingCancelled() {
+        return Thread.currentThread().isInterrupted();
+    }
+
+    private boolean shouldPreview(CameraProSession session) {
+        // An edited image is the result of a previewed one
+        return session.getSettings().isPreview() && !session.isEdited();
+    }
+
+    /**
+     * Send the thumbnail embedded in the image exif data to the listeners, rotated upright,
+     * so it can be shown while the image itself is processed. Only call from the processing pool.
+     * @param call the call the preview is for
+     * @param session
+     * @param source
+     */
+    private void notifyPreview(PluginCall call, CameraProSession session, ImageSource source) {
+        Bitmap thumbnail = source.getThumbnail();
+        if (thumbnail == null) {
+            return;
+        }
+        final Bitmap rotated = ImageUtils.correctOrientation(thumbnail, source.getOrientation(), null);
+        thumbnail = replaceBitmap(thumbnail, rotated);
+
+        ByteArrayOutputStream thumbnailOutputStream = new ByteArrayOutputStream();
+        thumbnail.compress(Bitmap.CompressFormat.JPEG, session.getSettings().getQuality(), thumbnailOutputStream);
+        String encoded = Base64.encodeToString(thumbnailOutputStream.toByteArray(), Base64.NO_WRAP);
+
+        JSObject preview = new JSObject();
+        preview.put("callbackId", call.getCallbackId());
+        preview.put("format", "jpeg");
+        preview.put("dataUrl", "data:image/jpeg;base64," + encoded);
+        preview.put("width", thumbnail.getWidth());
+        preview.put("height", thumbnail.getHeight());
+        thumbnail.recycle();
+        notifyListeners(PHOTO_PREVIEW_EVENT, preview);
+    }
+
+    private void processPickedVideo(Uri videoUri, PluginCall call, CameraProSession session) {
+        try {
+            returnVideoResult(call, session, videoUri);
+        } catch (OutOfMemoryError err) {
+            rejectCall(call, "Out of memory");
+            Logger.error(getLogTag(), UNABLE_TO_PROCESS_VIDEO,err);
+        }
+    }
+
+    private JSObject processPickedImages(CameraProSession session, Uri imageUri) {
+        try (ImageSource source = ImageSource.open(getContext(), imageUri)) {
+            String resultKey = getResultKey(session, source);
+            if (resultKey != null) {
+                return getCachedResult(session, source, resultKey, "Unable to process bitmap");
+            }
+            return processToFile(session, source, "Unable to process bitmap");
+        } catch (FileNotFoundException ex) {
+            Logger.error(getLogTag(), "No such image found", ex);
+            JSObject ret = new JSObject();
+            ret.put("error", "No such image found");
+            return ret;
+        }
+    }
+
+    /**
+     * Process the image into a file
+     * @param session
+     * @param source
+     * @param decodeError the error to return if the image can't be decoded
+     * @return the file result, or an object with the error if it failed
+     */
+    private JSObject processToFile(CameraProSession session, ImageSource source, String decodeError) {
+        CameraProSettings settings = session.getSettings();
+        Uri imageUri = source.getUri();
+        JSObject ret = new JSObject();
+        PixelMemoryBudget.Reservation pixels = pixelBudget.newReservation();
+        Bitmap bitmap = null;
+        try {
+            if (canReturnOriginal(session, source)) {
+                Uri newUri = copyOriginal(source);
+                if (newUri == null) {
+                    ret.put("error", UNABLE_TO_PROCESS_IMAGE);
+                    return ret;
+                }
+                return createFileResult(session, newUri, readExif(session, source));
+            }
+            ExifWrapper exif = readExif(session, source);
+            AtomicBoolean degraded = new AtomicBoolean(false);
+            bitmap = loadImage(session, source, exif, pixels, degraded);
+
+            if (bitmap == null) {
+                ret.put("error", decodeError);
+                return ret;
+            }
+
+            JSArray derivatives = createDerivatives(session, imageUri, bitmap);
+            Uri newUri = writeImage(session, imageUri, bitmap, exif);
+            ret = createFileResult(session, newUri, exif);
+            putDerivatives(ret, derivatives);
+            if (degraded.get()) {
+                ret.put("degraded", true);
+            }
+            return ret;
+        } catch (OutOfMemoryError err) {
+            memory.onOutOfMemory();
+            ret.put("error", "Out of memory");
+        } catch (IOException ex) {
+            ret.put("error", UNABLE_TO_PROCESS_IMAGE);
+            Logger.error(getLogTag(), UNABLE_TO_PROCESS_IMAGE, ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            ret.put("error", IMAGE_PROCESS_CANCELLED_ERROR);
+        } finally {
+            // The pixels are given back to the budget only once they are freed
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+            pixels.close();
+        }
+        return ret;
+    }
+
+    @ActivityCallback
+    private void processEditedImage(PluginCall call, ActivityResult result) {
+        CameraProSession session = getSession(call);
+        session.getTimings().stopActivity(CameraProStage.EDIT);
+        session.setEdited(true);
+        if (result.getResultCode() == Activity.RESULT_CANCELED) {
+            // User cancelled the edit operation, if this file was picked from photos,
+            // process the original picked image, otherwise process it as a camera photo
+            if (session.getImagePickedContentUri() != null) {
+                processPickedImage(session.getImagePickedContentUri(), call, session);
+            } else {
+                processCameraImage(call, session);
+            }
+        } else {
+            processPickedImage(call, session, result);
+        }
+    }
+
+    /**
+     * Save the modified image in a new file of the cache directory, never over the source
+     * or over another result, which may still be returned from the result cache
+     * @param uri
+     * @param bitmap
+     * @param encoder
+     * @param exifSegment exif APP1 segment to insert in the JPEG stream, or null
+     * @return
+     * @throws IOException
+     */
+    private Uri saveImage(Uri uri, Bitmap bitmap, ImageEncoder encoder, byte[] exifSegment) throws IOException {
+        File outFile = getTempFile(uri, encoder.getFormat());
+        encoder.writeTo(outFile, bitmap, exifSegment);
+        return Uri.fromFile(outFile);
+    }
+
+    private ImageEncoder createEncoder(CameraProSettings settings) {
+        return new ImageEncoder(settings.getFormat(), settings.getQuality(), settings.getMaxBytes(), getContext().getCacheDir());
+    }
+
+    /**
+     * Get the exif segment to write with the image, only JPEG output carries exif data
+     * @param settings
+     * @param exif
+     * @return
+     */
+    private byte[] getExifSegment(CameraProSettings settings, ExifWrapper exif) {
+        if (settings.getFormat() != CameraProOutputFormat.JPEG) {
+            return null;
+        }
+        return exif.toJpegSegment(getContext().getCacheDir());
+    }
+
+    /**
+     * Get a new file for an output of the image. Every output gets its own name, so results
+     * of the same image, or of images with the same name, never overwrite each other.
+     * @param uri
+     * @param format
+     * @return
+     */
+    private File getTempFile(Uri uri, CameraProOutputFormat format) {
+        return new File(getCacheDirectory(), getOutputName(uri) + "." + format.getExtension());
+    }
+
+    /**
+     * Name an output after the image, with a unique suffix
+     * @param uri
+     * @return
+     */
+    private String getOutputName(Uri uri) {
+        String filename = Uri.parse(Uri.decode(uri.toString())).getLastPathSegment();
+        if (filename == null) {
+            filename = "image";
+        }
+        int extension = filename.lastIndexOf('.');
+        if (extension > 0) {
+            filename = filename.substring(0, extension);
+        }
+        return filename + "-" + UUID.randomUUID();
+    }
+
+    /**
+     * After processing the image, return the final result back to the caller.
+     * @param call
+     * @param session
+     * @param bitmap the orientation corrected and resized image
+     * @param source
+     * @param exif
+     */
+    private void returnResult(PluginCall call, CameraProSession session, Bitmap bitmap, ImageSource source, ExifWrapper exif) {
+        CameraProSettings settings = session.getSettings();
+        Uri u = source.getUri();
+
+        if (settings.isAllowEditing() && !session.isEdited()) {
+            editImage(call, session, u, bitmap);
+            return;
+        }
+
+        saveImageToGallery(call, session);
+
+        try {
+            JSArray derivatives = createDerivatives(session, u, bitmap);
+            if (settings.getResultType() == CameraProResultType.BASE64) {
+                ByteArrayOutputStream encoded = encodeImage(session, bitmap);
+                // Only the encoded bytes are needed from here, free the pixels before the base64 copy
+                bitmap.recycle();
+                returnBase64(call, session, exif, encoded, derivatives);
+            } else if (settings.getResultType() == CameraProResultType.URI) {
+                // File results are compressed straight to disk, without an in-memory copy
+                returnFileURI(call, session, exif, bitmap, u, derivatives);
+            } else if (settings.getResultType() == CameraProResultType.DATAURL) {
+                ByteArrayOutputStream encoded = encodeImage(session, bitmap);
+                bitmap.recycle();
+                returnDataUrl(call, session, exif, encoded, derivatives);
+            } else {
+                rejectCall(call, INVALID_RESULT_TYPE_ERROR);
+            }
+        } catch (IOException ex) {
+            Logger.error(getLogTag(), UNABLE_TO_PROCESS_IMAGE, ex);
+            rejectCall(call, UNABLE_TO_PROCESS_IMAGE, ex);
+        }
+        clearImageState(session);
+    }
+
+    /**
+     * Check if the image can be returned as it is, skipping the decode and compress cycle:
+     * a JPEG returned as a file uri with all its exif data, and no rotation, resize or edit to apply.
+     * @param session
+     * @param source
+     * @return
+     */
+    private boolean canReturnOriginal(CameraProSession session, ImageSource source) {
+        CameraProSettings settings = session.getSettings();
+        if (
+            settings.getResultType() != CameraProResultType.URI ||
+            (settings.isAllowEditing() && !session.isEdited()) ||
+            settings.getFormat() != CameraProOutputFormat.JPEG ||
+            settings.getMaxBytes() > 0 ||
+            !settings.getDerivatives().isEmpty() ||
+            !"image/jpeg".equals(source.getMimeType())
+        ) {
+            return false;
+        }
+        if (settings.isShouldCorrectOrientation() && source.getOrientation() != 0) {
+            return false;
+        }
+        // A resize never enlarges, so an image that already fits is left untouched
+        boolean fitsWidth = settings.getWidth() <= 0 || source.getWidth() <= settings.getWidth();
+        boolean fitsHeight = settings.getHeight() <= 0 || source.getHeight() <= settings.getHeight();
+        return fitsWidth && fitsHeight;
+    }
+
+    /**
+     * Return the original image to the caller, as a file uri
+     * @param call
+     * @param session
+     * @param source
+     */
+    private void returnOriginal(PluginCall call, CameraProSession session, ImageSource source) {
+        CameraProSettings settings = session.getSettings();
+        ExifWrapper exif = readExif(session, source);
+        saveImageToGallery(call, session);
+        Uri newUri = copyOriginal(source);
+        if (newUri != null) {
+            JSObject ret = createFileResult(session, newUri, exif);
+            ret.put("saved", session.isSaved());
+            finishTimings(session, ret);
+            call.resolve(ret);
+        } else {
+            rejectCall(call, UNABLE_TO_PROCESS_IMAGE);
+        }
+        clearImageState(session);
+    }
+
+    /**
+     * Get a file uri with the original bytes of the image. Files are returned as they are,
+     * content uris are stream copied to a temporary file.
+     * @param source
+     * @return the file uri, or null if the image couldn't be copied
+     */
+    private Uri copyOriginal(ImageSource source) {
+        Uri uri = source.getUri();
+        if (!"content".equals(uri.getScheme())) {
+            return uri;
+        }
+        try {
+            File outFile = getTempFile(uri, CameraProOutputFormat.JPEG);
+            source.copyTo(outFile);
+            return Uri.fromFile(outFile);
+        } catch (IOException ex) {
+            Logger.error(getLogTag(), UNABLE_TO_PROCESS_IMAGE, ex);
+            return null;
+        }
+    }
+
+    private void saveImageToGallery(PluginCall call, CameraProSession session) {
+        boolean saveToGallery = call.getBoolean("saveToGallery", CameraProSettings.DEFAULT_SAVE_IMAGE_TO_GALLERY);
+        String imageEditedFileSavePath = session.getImageEditedFileSavePath();
+        String imageFileSavePath = session.getImageFileSavePath();
         if (saveToGallery && (imageEditedFileSavePath != null || imageFileSavePath != null)) {
-            isSaved = true;
+            session.setSaved(true);
+            long start = CameraProTimings.now();
             try {
                 String fileToSavePath = imageEditedFileSavePath != null ? imageEditedFileSavePath : imageFileSavePath;
                 File fileToSave = new File(fileToSavePath);
@@ -768,35 +1643,31 @@ public class CameraProPlugin extends Plugin {
                     ""
                 );
                 if (inserted == null) {
-                    isSaved = false;
+                    session.setSaved(false);
                 }
             } catch (FileNotFoundException e) {
-                isSaved = false;
+                session.setSaved(false);
                 Logger.error(getLogTag(), IMAGE_GALLERY_SAVE_ERROR, e);
             }
+            session.getTimings().add(CameraProStage.GALLERY, start);
         }
+    }
 
-        if (settings.getResultType() == CameraProResultType.BASE64) {
-            returnBase64(call, exif, bitmapOutputStream);
-        } else if (settings.getResultType() == CameraProResultType.URI) {
-            returnFileURI(call, exif, bitmap, u, bitmapOutputStream);
-        } else if (settings.getResultType() == CameraProResultType.DATAURL) {
-            returnDataUrl(call, exif, bitmapOutputStream);
-        } else {
-            call.reject(INVALID_RESULT_TYPE_ERROR);
-        }
+    private void clearImageState(CameraProSession session) {
         // Result returned, clear stored paths and images
-        if (settings.getResultType() != CameraProResultType.URI) {
-            deleteImageFile();
+        if (session.getSettings().getResultType() != CameraProResultType.URI) {
+            deleteImageFile(session);
         }
-        imageFileSavePath = null;
-        imageFileUri = null;
-        imagePickedContentUri = null;
-        imageEditedFileSavePath = null;
+        session.setImageFileSavePath(null);
+        session.setImageFileUri(null);
+        session.setImagePickedContentUri(null);
+        session.setImageEditedFileSavePath(null);
+        endSession(session);
     }
 
-    private void deleteImageFile() {
-        if (imageFileSavePath != null && !settings.isSaveToGallery()) {
+    private void deleteImageFile(CameraProSession session) {
+        String imageFileSavePath = session.getImageFileSavePath();
+        if (imageFileSavePath != null && !session.getSettings().isSaveToGallery()) {
             File photoFile = new File(imageFileSavePath);
             if (photoFile.exists()) {
                 photoFile.delete();
@@ -804,60 +1675,288 @@ public class CameraProPlugin extends Plugin {
         }
     }
 
-    private void returnFileURI(PluginCall call, ExifWrapper exif, Bitmap bitmap, Uri u, ByteArrayOutputStream bitmapOutputStream) {
-        Uri newUri = getTempImage(u, bitmapOutputStream);
-        exif.copyExif(newUri.getPath());
-        if (newUri != null) {
-            JSObject ret = new JSObject();
-            ret.put("format", "jpeg");
-            ret.put("exif", exif.toJson());
-            ret.put("path", newUri.toString());
-            ret.put("webPath", FileUtils.getPortablePath(getContext(), bridge.getLocalUrl(), newUri));
-            ret.put("saved", isSaved);
+    private void returnFileURI(PluginCall call, CameraProSession session, ExifWrapper exif, Bitmap bitmap, Uri u, JSArray derivatives) {
+        CameraProSettings settings = session.getSettings();
+        try {
+            Uri newUri = writeImage(session, u, bitmap, exif);
+            JSObject ret = createFileResult(session, newUri, exif);
+            ret.put("saved", session.isSaved());
+            putDerivatives(ret, derivatives);
+            putDegraded(session, ret);
+            finishTimings(session, ret);
             call.resolve(ret);
-        } else {
-            call.reject(UNABLE_TO_PROCESS_IMAGE);
+        } catch (IOException ex) {
+            Logger.error(getLogTag(), UNABLE_TO_PROCESS_IMAGE, ex);
+            rejectCall(call, UNABLE_TO_PROCESS_IMAGE, ex);
         }
     }
 
-    private Uri getTempImage(Uri u, ByteArrayOutputStream bitmapOutputStream) {
-        ByteArrayInputStream bis = null;
-        Uri newUri = null;
+    /**
+     * Write the requested derivatives of the image. They are produced from the largest to the
+     * smallest, each one scaled down from the previous one instead of from the full image.
+     * @param session
+     * @param uri
+     * @param bitmap the orientation corrected and resized image
+     * @return the derivatives in the requested order, or null if none were requested
+     * @throws IOException
+     */
+    private JSArray createDerivatives(CameraProSession session, Uri uri, final Bitmap bitmap) throws IOException {
+        final CameraProSettings settings = session.getSettings();
+        final List<CameraProDerivative> derivatives = settings.getDerivatives();
+        if (derivatives.isEmpty()) {
+            return null;
+        }
+        final long start = CameraProTimings.now();
+        final int count = derivatives.size();
+        final long[] areas = new long[count];
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            CameraProDerivative derivative = derivatives.get(i);
+            int[] size = ImageUtils.getResizedDimensions(bitmap.getWidth(), bitmap.getHeight(), derivative.getWidth(), derivative.getHeight());
+            areas[i] = (long) size[0] * size[1];
+            order.add(i);
+        }
+        Collections.sort(order, (a, b) -> Long.compare(areas[b], areas[a]));
+
+        JSObject[] results = new JSObject[count];
+        Bitmap previous = bitmap;
         try {
-            bis = new ByteArrayInputStream(bitmapOutputStream.toByteArray());
-            newUri = saveImage(u, bis);
-        } catch (IOException ex) {} finally {
-            if (bis != null) {
-                try {
-                    bis.close();
-                } catch (IOException e) {
-                    Logger.error(getLogTag(), UNABLE_TO_PROCESS_IMAGE, e);
+            for (int index : order) {
+                CameraProDerivative derivative = derivatives.get(index);
+                Bitmap scaled = ImageUtils.resize(previous, derivative.getWidth(), derivative.getHeight(), settings.getResizeQuality());
+                if (previous != bitmap && previous != scaled) {
+                    previous.recycle();
+                }
+                previous = scaled;
+
+                CameraProOutputFormat format = derivative.getFormat();
+                ImageEncoder encoder = new ImageEncoder(format, derivative.getQuality(), 0, getContext().getCacheDir());
+                File outFile = getDerivativeFile(uri, scaled, format);
+                encoder.writeTo(outFile, scaled, null);
+
+                cache.touch(outFile, session.getCallId());
+
+                Uri derivativeUri = Uri.fromFile(outFile);
+                JSObject result = new JSObject();
+                result.put("format", format.getFormat());
+                result.put("width", scaled.getWidth());
+                result.put("height", scaled.getHeight());
+                result.put("path", derivativeUri.toString());
+                result.put("webPath", FileUtils.getPortablePath(getContext(), bridge.getLocalUrl(), derivativeUri));
+                results[index] = result;
+            }
+        } finally {
+            if (previous != bitmap) {
+                previous.recycle();
+            }
+        }
+
+        JSArray ret = new JSArray();
+        for (JSObject result : results) {
+            ret.put(result);
+        }
+        session.getTimings().add(CameraProStage.DERIVATIVES, start);
+        return ret;
+    }
+
+    private File getDerivativeFile(Uri uri, Bitmap bitmap, CameraProOutputFormat format) {
+        String size = bitmap.getWidth() + "x" + bitmap.getHeight();
+        return new File(getCacheDirectory(), getOutputName(uri) + "." + size + "." + format.getExtension());
+    }
+
+    /**
+     * Mark a returned file as recently used, so it is the last one evicted from the cache
+     * @param uri
+     * @param callId the call the file is returned to, pinned until it completes
+     */
+    private void touchFile(Uri uri, String callId) {
+        if ("file".equals(uri.getScheme())) {
+            cache.touch(new File(uri.getPath()), callId);
+        }
+    }
+
+    private void putDerivatives(JSObject ret, JSArray derivatives) {
+        if (derivatives != null) {
+            ret.put("derivatives", derivatives);
+        }
+    }
+
+    private void putDegraded(CameraProSession session, JSObject ret) {
+        if (session.isDegraded()) {
+            ret.put("degraded", true);
+        }
+    }
+
+    private JSObject createFileResult(CameraProSession session, Uri newUri, ExifWrapper exif) {
+        CameraProSettings settings = session.getSettings();
+        touchFile(newUri, session.getCallId());
+        JSObject ret = new JSObject();
+        ret.put("format", settings.getFormat().getFormat());
+        ret.put("exif", exif.toJson());
+        ret.put("path", newUri.toString());
+        ret.put("webPath", FileUtils.getPortablePath(getContext(), bridge.getLocalUrl(), newUri));
+        return ret;
+    }
+
+    /**
+     * Decode the image and correct its orientation and size. The decode is subsampled to fit
+     * the memory available, and if memory still runs out the image is decoded again with fewer
+     * pixels: first in RGB_565 for images without alpha, then with twice the sample size.
+     * @param session
+     * @param source
+     * @param exif
+     * @param pixels sized to the pixels of the decode, waiting for the budget to admit them
+     * @param degraded set if the image has fewer pixels than requested because memory was short
+     * @return the prepared Bitmap, or null if the image could not be decoded
+     * @throws InterruptedException if the processing was cancelled while waiting for memory
+     */
+    private Bitmap loadImage(
+        CameraProSession session,
+        ImageSource source,
+        ExifWrapper exif,
+        PixelMemoryBudget.Reservation pixels,
+        AtomicBoolean degraded
+    ) throws InterruptedException {
+        CameraProSettings settings = session.getSettings();
+        // Not the lazy getter, this runs on the pool's own threads
+        ThreadPoolExecutor executor = session.getProcessingExecutor();
+        long budget = memory.getDecodeBudget(executor != null ? executor.getActiveCount() : 1);
+        int sampleSize = source.getSampleSize(settings.getWidth(), settings.getHeight(), budget);
+        if (sampleSize > source.getSampleSize(settings.getWidth(), settings.getHeight(), 0)) {
+            degraded.set(true);
+        }
+        Bitmap.Config config = Bitmap.Config.ARGB_8888;
+        long waitNanos = pixels.resize(getDecodedBytes(source, sampleSize, config));
+        session.getTimings().addDuration(CameraProStage.WAIT, waitNanos);
+        for (int retry = 0;; retry++) {
+            Bitmap bitmap = null;
+            try {
+                bitmap = decodeImage(session, source, sampleSize, config);
+                if (bitmap == null) {
+                    return null;
+                }
+                return prepareBitmap(session, bitmap, source.getOrientation(), exif);
+            } catch (OutOfMemoryError err) {
+                if (bitmap != null) {
+                    bitmap.recycle();
                 }
+                if (retry >= MAX_DECODE_RETRIES || isProcessingCancelled()) {
+                    throw err;
+                }
+                Logger.warn(getLogTag(), "Out of memory processing " + source.getUri() + ", retrying with fewer pixels");
+                memory.onOutOfMemory();
+                degraded.set(true);
+                if (config == Bitmap.Config.ARGB_8888 && "image/jpeg".equals(source.getMimeType())) {
+                    config = Bitmap.Config.RGB_565;
+                } else {
+                    sampleSize *= 2;
+                }
+                pixels.resize(getDecodedBytes(source, sampleSize, config));
             }
         }
+    }
+
+    private long getDecodedBytes(ImageSource source, int sampleSize, Bitmap.Config config) {
+        int bytesPerPixel = config == Bitmap.Config.RGB_565 ? 2 : 4;
+        return Math.max(0, ImageGeometry.getSampledBytes(source.getWidth(), source.getHeight(), sampleSize, bytesPerPixel));
+    }
+
+    private Bitmap decodeImage(CameraProSession session, ImageSource source, int sampleSize, Bitmap.Config config) {
+        long start = CameraProTimings.now();
+        Bitmap bitmap = source.decode(sampleSize, config);
+        session.getTimings().add(CameraProStage.DECODE, start);
+        if (bitmap != null) {
+            session.getTimings().addBytes(CameraProTimings.DECODED_BYTES, bitmap.getByteCount());
+        }
+        return bitmap;
+    }
+
+    private ExifWrapper readExif(CameraProSession session, ImageSource source) {
+        long start = CameraProTimings.now();
+        ExifWrapper exif = source.getExif(session.getSettings().getExifTags());
+        session.getTimings().add(CameraProStage.EXIF, start);
+        return exif;
+    }
+
+    /**
+     * Encode the image in memory, for base64 and data url results
+     * @param session
+     * @param bitmap
+     * @return
+     * @throws IOException
+     */
+    private ByteArrayOutputStream encodeImage(CameraProSession session, Bitmap bitmap) throws IOException {
+        long start = CameraProTimings.now();
+        ByteArrayOutputStream encoded = createEncoder(session.getSettings()).encode(bitmap);
+        session.getTimings().add(CameraProStage.ENCODE, start);
+        session.getTimings().addBytes(CameraProTimings.ENCODED_BYTES, encoded.size());
+        return encoded;
+    }
+
+    /**
+     * Encode the image straight to its result file
+     * @param session
+     * @param uri
+     * @param bitmap
+     * @param exif
+     * @return the uri of the file
+     * @throws IOException
+     */
+    private Uri writeImage(CameraProSession session, Uri uri, Bitmap bitmap, ExifWrapper exif) throws IOException {
+        CameraProSettings settings = session.getSettings();
+        long start = CameraProTimings.now();
+        Uri newUri = saveImage(uri, bitmap, createEncoder(settings), getExifSegment(settings, exif));
+        session.getTimings().add(CameraProStage.WRITE, start);
+        session.getTimings().addBytes(CameraProTimings.ENCODED_BYTES, new File(newUri.getPath()).length());
         return newUri;
     }
 
+    private String encodeBase64(CameraProSession session, ByteArrayOutputStream bitmapOutputStream) {
+        long start = CameraProTimings.now();
+        String encoded = Base64.encodeToString(bitmapOutputStream.toByteArray(), Base64.NO_WRAP);
+        session.getTimings().add(CameraProStage.BASE64, start);
+        session.getTimings().addBytes(CameraProTimings.BASE64_BYTES, encoded.length());
+        return encoded;
+    }
+
+    /**
+     * Complete the timings of the call once it has its result, add them to the metrics,
+     * and return them with the result if they were requested
+     * @param session
+     * @param ret
+     */
+    private void finishTimings(CameraProSession session, JSObject ret) {
+        CameraProTimings timings = session.getTimings();
+        timings.finish();
+        metrics.record(timings);
+        if (session.getSettings().isMetrics()) {
+            ret.put("metrics", timings.toJson());
+        }
+    }
+
     /**
      * Apply our standard processing of the bitmap, returning a new one and
      * recycling the old one in the process
+     * @param session
      * @param bitmap
-     * @param imageUri
+     * @param orientation
      * @param exif
      * @return
      */
-    private Bitmap prepareBitmap(Bitmap bitmap, Uri imageUri, ExifWrapper exif) throws IOException {
-        if (settings.isShouldCorrectOrientation()) {
-            final Bitmap newBitmap = ImageUtils.correctOrientation(getContext(), bitmap, imageUri, exif);
-            bitmap = replaceBitmap(bitmap, newBitmap);
-        }
-
-        if (settings.isShouldResize()) {
-            final Bitmap newBitmap = ImageUtils.resize(bitmap, settings.getWidth(), settings.getHeight());
-            bitmap = replaceBitmap(bitmap, newBitmap);
-        }
-
-        return bitmap;
+    private Bitmap prepareBitmap(CameraProSession session, Bitmap bitmap, int orientation, ExifWrapper exif) {
+        CameraProSettings settings = session.getSettings();
+        long start = CameraProTimings.now();
+        // Orientation and size are corrected by the same transform, without a full size rotated copy
+        final Bitmap newBitmap = ImageUtils.orientAndResize(
+            bitmap,
+            settings.isShouldCorrectOrientation() ? orientation : 0,
+            exif,
+            settings.isShouldResize() ? settings.getWidth() : 0,
+            settings.isShouldResize() ? settings.getHeight() : 0,
+            settings.getResizeQuality()
+        );
+        session.getTimings().add(CameraProStage.TRANSFORM, start);
+        return replaceBitmap(bitmap, newBitmap);
     }
 
     private Bitmap replaceBitmap(Bitmap bitmap, final Bitmap newBitmap) {
@@ -868,36 +1967,55 @@ public class CameraProPlugin extends Plugin {
         return bitmap;
     }
 
-    private void returnDataUrl(PluginCall call, ExifWrapper exif, ByteArrayOutputStream bitmapOutputStream) {
-        byte[] byteArray = bitmapOutputStream.toByteArray();
-        String encoded = Base64.encodeToString(byteArray, Base64.NO_WRAP);
+    private void returnDataUrl(
+        PluginCall call,
+        CameraProSession session,
+        ExifWrapper exif,
+        ByteArrayOutputStream bitmapOutputStream,
+        JSArray derivatives
+    ) {
+        CameraProSettings settings = session.getSettings();
+        String encoded = encodeBase64(session, bitmapOutputStream);
 
         JSObject data = new JSObject();
-        data.put("format", "jpeg");
-        data.put("dataUrl", "data:image/jpeg;base64," + encoded);
+        data.put("format", settings.getFormat().getFormat());
+        data.put("dataUrl", "data:" + settings.getFormat().getMimeType() + ";base64," + encoded);
         data.put("exif", exif.toJson());
+        putDerivatives(data, derivatives);
+        putDegraded(session, data);
+        finishTimings(session, data);
         call.resolve(data);
     }
 
-    private void returnBase64(PluginCall call, ExifWrapper exif, ByteArrayOutputStream bitmapOutputStream) {
-        byte[] byteArray = bitmapOutputStream.toByteArray();
-        String encoded = Base64.encodeToString(byteArray, Base64.NO_WRAP);
+    private void returnBase64(
+        PluginCall call,
+        CameraProSession session,
+        ExifWrapper exif,
+        ByteArrayOutputStream bitmapOutputStream,
+        JSArray derivatives
+    ) {
+        CameraProSettings settings = session.getSettings();
+        String encoded = encodeBase64(session, bitmapOutputStream);
 
         JSObject data = new JSObject();
-        data.put("format", "jpeg");
+        data.put("format", settings.getFormat().getFormat());
         data.put("base64String", encoded);
         data.put("exif", exif.toJson());
+        putDerivatives(data, derivatives);
+        putDegraded(session, data);
+        finishTimings(session, data);
         call.resolve(data);
     }
 
-    private void returnVideoResult(PluginCall call, Uri u) {
+    private void returnVideoResult(PluginCall call, CameraProSession session, Uri u) {
         if(u == null) {
-            call.reject(VIDEO_PROCESS_NO_FILE_ERROR);
+            rejectCall(call, VIDEO_PROCESS_NO_FILE_ERROR);
             return;
         }
-        boolean saveToGallery = videoSettings.isSaveToGallery();
+        boolean saveToGallery = session.getVideoSettings().isSaveToGallery();
+        String videoFileSavePath = session.getVideoFileSavePath();
         if (saveToGallery && videoFileSavePath != null) {
-            isSaved = true;
+            session.setSaved(true);
             /* try {
                 String fileToSavePath = videoFileSavePath;
                 File fileToSave = new File(fileToSavePath);
@@ -919,25 +2037,319 @@ public class CameraProPlugin extends Plugin {
             // https://developer.android.com/reference/android/provider/MediaStore.Video?hl=es-419
         }
 
-        returnVideoFileURI(call, u);
-        videoFileSavePath = null;
-        videoFileUri = null;
-        videoPickedContentUri = null;
+        returnVideoFileURI(call, session, u);
+        session.setVideoFileSavePath(null);
+        session.setVideoFileUri(null);
+        session.setVideoPickedContentUri(null);
     }
 
-    private void returnVideoFileURI(PluginCall call, Uri u) {
+    /**
+     * Resolve the call with the video and its thumbnails. The session ends once the result
+     * is built, so the files are pinned to the call while they are touched.
+     * @param call
+     * @param session
+     * @param u
+     */
+    private void returnVideoFileURI(PluginCall call, CameraProSession session, Uri u) {
         if (u != null) {
-            JSObject ret = new JSObject();
-            ret.put("format", "mp4");
-            ret.put("path", u.toString());
-            ret.put("webPath", FileUtils.getPortablePath(getContext(), bridge.getLocalUrl(), u));
-            ret.put("saved", isSaved);
-            call.resolve(ret);
+            JSObject ret = createVideoResult(session, u);
+            final CameraProThumbnailSettings thumbnails = session.getVideoSettings().getThumbnails();
+            if (thumbnails == null) {
+                endSession(session);
+                call.resolve(ret);
+                return;
+            }
+            try {
+                getProcessingExecutor()
+                    .execute(
+                        () -> {
+                            try {
+                                putOptionalVideoThumbnails(ret, u, thumbnails, session.getCallId());
+                            } finally {
+                                endSession(session);
+                            }
+                            call.resolve(ret);
+                        }
+                    );
+            } catch (RejectedExecutionException ex) {
+                endSession(session);
+                call.resolve(ret);
+            }
         } else {
-            call.reject(UNABLE_TO_PROCESS_IMAGE);
+            rejectCall(call, UNABLE_TO_PROCESS_IMAGE);
+        }
+    }
+
+    private JSObject createVideoResult(CameraProSession session, Uri u) {
+        touchFile(u, session.getCallId());
+        JSObject ret = new JSObject();
+        ret.put("format", "mp4");
+        ret.put("path", u.toString());
+        ret.put("webPath", FileUtils.getPortablePath(getContext(), bridge.getLocalUrl(), u));
+        ret.put("saved", session.isSaved());
+        putVideoMetadata(ret, u);
+        return ret;
+    }
+
+    /**
+     * Put the thumbnails of a video in its result. The video was recorded or picked fine,
+     * so it is returned even if its thumbnails can't be extracted.
+     */
+    private void putOptionalVideoThumbnails(JSObject ret, Uri u, CameraProThumbnailSettings thumbnails, String callId) {
+        try {
+            putVideoThumbnails(ret, u, thumbnails, callId);
+        } catch (IOException | RuntimeException ex) {
+            // MediaMetadataRetriever throws runtime exceptions for corrupt or unsupported videos
+            Logger.error(getLogTag(), "Unable to extract the video thumbnails", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Read the duration, size, rotation, codec and bitrate of a video from its headers. Only
+     * a few small reads, so unlike MediaMetadataRetriever it can run for every video.
+     * @param ret the result to put the metadata in
+     * @param uri
+     */
+    private void putVideoMetadata(JSObject ret, Uri uri) {
+        Mp4Metadata metadata;
+        try {
+            ParcelFileDescriptor descriptor = getContext().getContentResolver().openFileDescriptor(uri, "r");
+            if (descriptor == null) {
+                return;
+            }
+            try (FileInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(descriptor)) {
+                metadata = Mp4Metadata.read(in.getChannel());
+            }
+        } catch (IOException | RuntimeException ex) {
+            // Not an mp4, or a provider that can't seek
+            Logger.debug(getLogTag(), "Unable to read the metadata of " + uri + ": " + ex.getMessage());
+            return;
+        }
+        if (metadata.getDuration() > 0) {
+            ret.put("duration", metadata.getDuration());
+            ret.put("bitrate", metadata.getBitrate());
+        }
+        if (metadata.getWidth() > 0 && metadata.getHeight() > 0) {
+            ret.put("width", metadata.getDisplayWidth());
+            ret.put("height", metadata.getDisplayHeight());
+        }
+        ret.put("rotation", metadata.getRotation());
+        if (metadata.getCodec() != null) {
+            ret.put("codec", metadata.getCodec());
+        }
+    }
+
+    @PluginMethod
+    public void getVideoThumbnails(final PluginCall call) {
+        String path = call.getString("path");
+        if (path == null) {
+            call.reject("Must provide the path of a video");
+            return;
+        }
+        Uri parsed = Uri.parse(path);
+        final Uri uri = parsed.getScheme() != null ? parsed : Uri.fromFile(new File(path));
+        final CameraProThumbnailSettings settings = getThumbnailSettings(call.getData());
+        final String callId = call.getCallbackId();
+        cache.hold(callId);
+        try {
+            getProcessingExecutor()
+                .execute(
+                    () -> {
+                        try {
+                            JSObject ret = new JSObject();
+                            putVideoThumbnails(ret, uri, settings, callId);
+                            call.resolve(ret);
+                        } catch (FileNotFoundException ex) {
+                            call.reject(VIDEO_PROCESS_NO_FILE_ERROR, ex);
+                        } catch (IOException | RuntimeException ex) {
+                            // MediaMetadataRetriever throws runtime exceptions for corrupt or unsupported videos
+                            Logger.error(getLogTag(), "Unable to extract the video thumbnails", ex);
+                            call.reject(UNABLE_TO_PROCESS_VIDEO, ex);
+                        } catch (InterruptedException ex) {
+                            Thread.currentThread().interrupt();
+                            call.reject(VIDEO_PROCESS_CANCELLED_ERROR);
+                        } finally {
+                            cache.release(callId);
+                        }
+                    }
+                );
+        } catch (RejectedExecutionException ex) {
+            cache.release(callId);
+            call.reject(VIDEO_PROCESS_CANCELLED_ERROR, ex);
         }
     }
 
+    /**
+     * Extract the poster frame of a video and its key frames as JPEG files in the cache
+     * directory. Frames already extracted with the same settings are reused from the disk.
+     * @param ret the result to put the poster and keyframes in
+     * @param uri
+     * @param settings
+     * @param callId the call the thumbnails are returned to
+     * @throws IOException if the video can't be read
+     * @throws InterruptedException if interrupted while waiting for pixel memory
+     */
+    private void putVideoThumbnails(JSObject ret, Uri uri, CameraProThumbnailSettings settings, String callId)
+        throws IOException, InterruptedException {
+        try (
+            VideoThumbnailer video = VideoThumbnailer.open(getContext(), uri);
+            PixelMemoryBudget.Reservation pixels = pixelBudget.newReservation()
+        ) {
+            JSObject poster = createVideoThumbnail(video, -1, settings, pixels, callId);
+            if (poster != null) {
+                ret.put("poster", poster);
+            }
+            long[] times = VideoThumbnailer.getKeyframeTimes(video.getDuration(), settings.getKeyframes());
+            if (times.length > 0) {
+                JSArray keyframes = new JSArray();
+                for (long time : times) {
+                    JSObject keyframe = createVideoThumbnail(video, time, settings, pixels, callId);
+                    if (keyframe != null) {
+                        keyframes.put(keyframe);
+                    }
+                }
+                ret.put("keyframes", keyframes);
+            }
+        }
+    }
+
+    /**
+     * Extract one frame of the video, or reuse the file it was extracted to before
+     * @param video
+     * @param time the time in milliseconds, negative for the poster frame
+     * @param settings
+     * @param pixels the reservation to hold the decoded frame with
+     * @param callId the call the thumbnail is returned to
+     * @return the thumbnail, null if the video has no frame at that time
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    private JSObject createVideoThumbnail(
+        VideoThumbnailer video,
+        long time,
+        CameraProThumbnailSettings settings,
+        PixelMemoryBudget.Reservation pixels,
+        String callId
+    ) throws IOException, InterruptedException {
+        File file = getVideoThumbnailFile(video, time, settings);
+        if (!file.isFile()) {
+            pixels.resize(video.getFrameBytes(settings.getWidth(), settings.getHeight()));
+            Bitmap frame = video.getFrame(time, settings.getWidth(), settings.getHeight());
+            if (frame == null) {
+                pixels.resize(0);
+                return null;
+            }
+            // Write next to the final file, so a reader never sees a partial thumbnail. Calls
+            // extracting the same frame at once each write their own file, the last rename wins.
+            File partial = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+            try {
+                new ImageEncoder(CameraProOutputFormat.JPEG, settings.getQuality(), 0, getCacheDirectory())
+                    .writeTo(partial, frame, null);
+            } catch (IOException | RuntimeException ex) {
+                partial.delete();
+                throw ex;
+            } finally {
+                frame.recycle();
+                pixels.resize(0);
+            }
+            if (!partial.renameTo(file)) {
+                partial.delete();
+                throw new IOException("Unable to write " + file);
+            }
+        }
+        cache.touch(file, callId);
+
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getAbsolutePath(), bounds);
+        Uri fileUri = Uri.fromFile(file);
+        JSObject ret = new JSObject();
+        ret.put("format", "jpeg");
+        ret.put("path", fileUri.toString());
+        ret.put("webPath", FileUtils.getPortablePath(getContext(), bridge.getLocalUrl(), fileUri));
+        ret.put("width", bounds.outWidth);
+        ret.put("height", bounds.outHeight);
+        if (time >= 0) {
+            ret.put("time", time);
+        }
+        return ret;
+    }
+
+    /**
+     * Name the file of a frame after the video and everything that changes the frame,
+     * so it is found again by the next call asking for the same frame
+     */
+    private File getVideoThumbnailFile(VideoThumbnailer video, long time, CameraProThumbnailSettings settings) {
+        String key =
+            video.getUri() +
+            "|" +
+            video.getFingerprint() +
+            "|" +
+            time +
+            "|" +
+            settings.getWidth() +
+            "x" +
+            settings.getHeight() +
+            "|" +
+            settings.getQuality();
+        String name = UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)).toString();
+        return new File(getCacheDirectory(), "thumbnail-" + name + ".jpg");
+    }
+
+    @PluginMethod
+    public void clearCache(final PluginCall call) {
+        try {
+            cache
+                .getWorker()
+                .execute(
+                    () -> {
+                        resultCache.clear();
+                        long freed = cache.clear();
+                        JSObject ret = new JSObject();
+                        ret.put("freedSize", freed);
+                        call.resolve(ret);
+                    }
+                );
+        } catch (RejectedExecutionException ex) {
+            call.reject(CACHE_SHUT_DOWN_ERROR, ex);
+        }
+    }
+
+    @PluginMethod
+    public void getCacheStats(final PluginCall call) {
+        try {
+            cache
+                .getWorker()
+                .execute(
+                    () -> {
+                        JSObject ret = new JSObject();
+                        ret.put("size", cache.getSize());
+                        ret.put("count", cache.getCount());
+                        ret.put("maxSize", cache.getMaxSize());
+                        call.resolve(ret);
+                    }
+                );
+        } catch (RejectedExecutionException ex) {
+            call.reject(CACHE_SHUT_DOWN_ERROR, ex);
+        }
+    }
+
+    @PluginMethod
+    public void getMetrics(PluginCall call) {
+        JSObject ret = metrics.toJson();
+        ret.put("memory", CameraProMetrics.getMemoryJson(pixelBudget));
+        call.resolve(ret);
+    }
+
+    @PluginMethod
+    public void resetMetrics(PluginCall call) {
+        metrics.reset();
+        pixelBudget.resetStats();
+        call.resolve();
+    }
+
     @Override
     @PluginMethod
     public void requestPermissions(PluginCall call) {
@@ -978,27 +2390,32 @@ public class CameraProPlugin extends Plugin {
         return permissionStates;
     }
 
-    private void editImage(PluginCall call, Uri uri, ByteArrayOutputStream bitmapOutputStream) {
+    private void editImage(PluginCall call, CameraProSession session, Uri uri, Bitmap bitmap) {
         try {
-            Uri tempImage = getTempImage(uri, bitmapOutputStream);
-            Intent editIntent = createEditIntent(tempImage);
+            // Editors are handed a JPEG, the edited image is encoded in the requested format afterwards
+            int quality = session.getSettings().getQuality();
+            ImageEncoder encoder = new ImageEncoder(CameraProOutputFormat.JPEG, quality, 0, getContext().getCacheDir());
+            Uri tempImage = saveImage(uri, bitmap, encoder, null);
+            Intent editIntent = createEditIntent(session, tempImage);
             if (editIntent != null) {
-                startActivityForResult(call, editIntent, "processEditedImage");
+                // Images are processed in the background, activities are started from the main thread
+                session.getTimings().startActivity();
+                bridge.executeOnMainThread(() -> startActivityForResult(call, editIntent, "processEditedImage"));
             } else {
-                call.reject(IMAGE_EDIT_ERROR);
+                rejectCall(call, IMAGE_EDIT_ERROR);
             }
         } catch (Exception ex) {
-            call.reject(IMAGE_EDIT_ERROR, ex);
+            rejectCall(call, IMAGE_EDIT_ERROR, ex);
         }
     }
 
-    private Intent createEditIntent(Uri origPhotoUri) {
+    private Intent createEditIntent(CameraProSession session, Uri origPhotoUri) {
         try {
             File editFile = new File(origPhotoUri.getPath());
             Uri editUri = FileProvider.getUriForFile(getActivity(), getContext().getPackageName() + ".fileprovider", editFile);
             Intent editIntent = new Intent(Intent.ACTION_EDIT);
             editIntent.setDataAndType(editUri, "image/*");
-            imageEditedFileSavePath = editFile.getAbsolutePath();
+            session.setImageEditedFileSavePath(editFile.getAbsolutePath());
             int flags = Intent.FLAG_GRANT_READ_URI_PERMISSION | Intent.FLAG_GRANT_WRITE_URI_PERMISSION;
             editIntent.addFlags(flags);
             editIntent.putExtra(MediaStore.EXTRA_OUTPUT, editUri);
@@ -1019,16 +2436,32 @@ public class CameraProPlugin extends Plugin {
     protected Bundle saveInstanceState() {
         Bundle bundle = super.saveInstanceState();
         if (bundle != null) {
-            bundle.putString("cameraImageFileSavePath", imageFileSavePath);
+            bundle.putString("cameraImageFileSavePath", getPendingImageFileSavePath());
         }
         return bundle;
     }
 
+    /**
+     * Get the file the camera is writing to, for the most recent session that opened the camera
+     * @return
+     */
+    private String getPendingImageFileSavePath() {
+        String imageFileSavePath = null;
+        synchronized (sessions) {
+            for (CameraProSession session : sessions.values()) {
+                if (session.getImageFileSavePath() != null) {
+                    imageFileSavePath = session.getImageFileSavePath();
+                }
+            }
+        }
+        return imageFileSavePath;
+    }
+
     @Override
     protected void restoreState(Bundle state) {
         String storedImageFileSavePath = state.getString("cameraImageFileSavePath");
         if (storedImageFileSavePath != null) {
-            imageFileSavePath = storedImageFileSavePath;
+            restoredImageFileSavePath = storedImageFileSavePath;
         }
     }
 }
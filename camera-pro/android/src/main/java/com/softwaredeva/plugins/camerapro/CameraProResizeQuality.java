@@ -0,0 +1,16 @@
+package com.softwaredeva.plugins.camerapro;
+
+public enum CameraProResizeQuality {
+    SPEED("speed"),
+    QUALITY("quality");
+
+    private String quality;
+
+    CameraProResizeQuality(String quality) {
+        this.quality = quality;
+    }
+
+    public String getQuality() {
+        return quality;
+    }
+}
@@ -0,0 +1,166 @@
+package com.softwaredeva.plugins.camerapro;
+
+import android.net.Uri;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Logger;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Remembers the file results produced for an image and its output settings, so picking the
+ * same image again returns the previous files instead of processing it again.
+ * Concurrent requests for the same key wait for the one already processing it.
+ */
+public class CameraProResultCache {
+
+    static final int MAX_ENTRIES = 64;
+
+    // Access ordered, so the least recently used result is dropped first
+    private final Map<String, String> results = new LinkedHashMap<String, String>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    private final Map<String, FutureTask<JSObject>> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Build the key of an image processed with the given settings
+     * @param uri
+     * @param fingerprint see {@link ImageSource#getFingerprint()}
+     * @param settings
+     * @return
+     */
+    public static String getKey(String uri, String fingerprint, CameraProSettings settings) {
+        return uri + "#" + fingerprint + "#" + settings.getOutputKey();
+    }
+
+    /**
+     * Get the result for the key, processing the image if there is none yet or if its
+     * files were deleted since. Results with an error, or degraded by a lack of memory, are
+     * returned but not remembered.
+     * @param key
+     * @param process produces the file result of the image
+     * @return a copy of the result, safe to modify
+     * @throws InterruptedException if the thread was interrupted while waiting for another request
+     */
+    public JSObject get(String key, Callable<JSObject> process) throws InterruptedException {
+        JSObject cached = getCached(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        FutureTask<JSObject> task = new FutureTask<>(process);
+        FutureTask<JSObject> running = pending.putIfAbsent(key, task);
+        if (running == null) {
+            running = task;
+            try {
+                task.run();
+                JSObject result = task.get();
+                if (result != null && !result.has("error") && !result.has("degraded")) {
+                    synchronized (results) {
+                        results.put(key, result.toString());
+                    }
+                }
+            } catch (ExecutionException ignored) {
+                // Rethrown below, like for the requests waiting for it
+            } finally {
+                pending.remove(key, task);
+            }
+        }
+        try {
+            return copy(running.get());
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    public void clear() {
+        synchronized (results) {
+            results.clear();
+        }
+    }
+
+    private JSObject getCached(String key) {
+        String json;
+        synchronized (results) {
+            json = results.get(key);
+        }
+        if (json == null) {
+            return null;
+        }
+        try {
+            JSObject result = new JSObject(json);
+            for (String path : getPaths(result)) {
+                if (!new File(path).isFile()) {
+                    // Evicted from the cache or deleted by the app
+                    synchronized (results) {
+                        results.remove(key);
+                    }
+                    return null;
+                }
+            }
+            return result;
+        } catch (JSONException ex) {
+            Logger.error("Unable to read cached result", ex);
+            return null;
+        }
+    }
+
+    /**
+     * Get the paths of the files of a result: the image itself and its derivatives
+     * @param result
+     * @return
+     */
+    static List<String> getPaths(JSONObject result) {
+        List<String> paths = new ArrayList<>();
+        addPath(paths, result);
+        JSONArray derivatives = result.optJSONArray("derivatives");
+        if (derivatives != null) {
+            for (int i = 0; i < derivatives.length(); i++) {
+                JSONObject derivative = derivatives.optJSONObject(i);
+                if (derivative != null) {
+                    addPath(paths, derivative);
+                }
+            }
+        }
+        return paths;
+    }
+
+    private static void addPath(List<String> paths, JSONObject result) {
+        String path = result.optString("path", null);
+        if (path != null) {
+            Uri uri = Uri.parse(path);
+            if ("file".equals(uri.getScheme())) {
+                paths.add(uri.getPath());
+            }
+        }
+    }
+
+    private static JSObject copy(JSObject result) {
+        if (result == null) {
+            return null;
+        }
+        try {
+            return new JSObject(result.toString());
+        } catch (JSONException ex) {
+            return result;
+        }
+    }
+}
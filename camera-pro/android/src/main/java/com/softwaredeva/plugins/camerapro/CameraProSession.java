@@ -0,0 +1,147 @@
+package com.softwaredeva.plugins.camerapro;
+
+import android.net.Uri;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * The state of a single plugin call: its settings, the files it works on and how far it got.
+ * Every call gets its own session, so overlapping calls don't overwrite each other's state.
+ */
+public class CameraProSession {
+
+    private final String callId;
+    private CameraProSettings settings = new CameraProSettings();
+    private CameraProVideoSettings videoSettings = new CameraProVideoSettings();
+    private final CameraProTimings timings = new CameraProTimings();
+
+    private String imageFileSavePath;
+    private String videoFileSavePath;
+    private String imageEditedFileSavePath;
+    private Uri imageFileUri;
+    private Uri videoFileUri;
+    private Uri imagePickedContentUri;
+    private Uri videoPickedContentUri;
+    private boolean edited = false;
+    private boolean saved = false;
+    private boolean degraded = false;
+    private ThreadPoolExecutor processingExecutor;
+
+    public CameraProSession(String callId) {
+        this.callId = callId;
+    }
+
+    public String getCallId() {
+        return callId;
+    }
+
+    public CameraProSettings getSettings() {
+        return settings;
+    }
+
+    public void setSettings(CameraProSettings settings) {
+        this.settings = settings;
+    }
+
+    public CameraProVideoSettings getVideoSettings() {
+        return videoSettings;
+    }
+
+    public void setVideoSettings(CameraProVideoSettings videoSettings) {
+        this.videoSettings = videoSettings;
+    }
+
+    public CameraProTimings getTimings() {
+        return timings;
+    }
+
+    public String getImageFileSavePath() {
+        return imageFileSavePath;
+    }
+
+    public void setImageFileSavePath(String imageFileSavePath) {
+        this.imageFileSavePath = imageFileSavePath;
+    }
+
+    public String getVideoFileSavePath() {
+        return videoFileSavePath;
+    }
+
+    public void setVideoFileSavePath(String videoFileSavePath) {
+        this.videoFileSavePath = videoFileSavePath;
+    }
+
+    public String getImageEditedFileSavePath() {
+        return imageEditedFileSavePath;
+    }
+
+    public void setImageEditedFileSavePath(String imageEditedFileSavePath) {
+        this.imageEditedFileSavePath = imageEditedFileSavePath;
+    }
+
+    public Uri getImageFileUri() {
+        return imageFileUri;
+    }
+
+    public void setImageFileUri(Uri imageFileUri) {
+        this.imageFileUri = imageFileUri;
+    }
+
+    public Uri getVideoFileUri() {
+        return videoFileUri;
+    }
+
+    public void setVideoFileUri(Uri videoFileUri) {
+        this.videoFileUri = videoFileUri;
+    }
+
+    public Uri getImagePickedContentUri() {
+        return imagePickedContentUri;
+    }
+
+    public void setImagePickedContentUri(Uri imagePickedContentUri) {
+        this.imagePickedContentUri = imagePickedContentUri;
+    }
+
+    public Uri getVideoPickedContentUri() {
+        return videoPickedContentUri;
+    }
+
+    public void setVideoPickedContentUri(Uri videoPickedContentUri) {
+        this.videoPickedContentUri = videoPickedContentUri;
+    }
+
+    public boolean isEdited() {
+        return edited;
+    }
+
+    public void setEdited(boolean edited) {
+        this.edited = edited;
+    }
+
+    public boolean isSaved() {
+        return saved;
+    }
+
+    public void setSaved(boolean saved) {
+        this.saved = saved;
+    }
+
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    public void setDegraded(boolean degraded) {
+        this.degraded = degraded;
+    }
+
+    /**
+     * The pool the images of the call are processed on, captured when they were submitted
+     */
+    public ThreadPoolExecutor getProcessingExecutor() {
+        return processingExecutor;
+    }
+
+    public void setProcessingExecutor(ThreadPoolExecutor processingExecutor) {
+        this.processingExecutor = processingExecutor;
+    }
+}
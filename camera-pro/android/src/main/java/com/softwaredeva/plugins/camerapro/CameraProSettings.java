@@ -1,5 +1,9 @@
 package com.softwaredeva.plugins.camerapro;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public class CameraProSettings {
 
     public static final int DEFAULT_QUALITY = 90;
@@ -9,9 +13,17 @@ public class CameraProSettings {
     private CameraProResultType resultType = CameraProResultType.BASE64;
     private int quality = DEFAULT_QUALITY;
     private boolean shouldResize = false;
+    private CameraProResizeQuality resizeQuality = CameraProResizeQuality.SPEED;
     private boolean shouldCorrectOrientation = DEFAULT_CORRECT_ORIENTATION;
     private boolean saveToGallery = DEFAULT_SAVE_IMAGE_TO_GALLERY;
     private boolean allowEditing = false;
+    private boolean progressive = false;
+    private boolean preview = false;
+    private boolean metrics = false;
+    private String[] exifTags = null;
+    private CameraProOutputFormat format = CameraProOutputFormat.JPEG;
+    private int maxBytes = 0;
+    private List<CameraProDerivative> derivatives = new ArrayList<>();
     private int width = 0;
     private int height = 0;
     private CameraProSource source = CameraProSource.PROMPT;
@@ -40,6 +52,14 @@ public class CameraProSettings {
         this.shouldResize = shouldResize;
     }
 
+    public CameraProResizeQuality getResizeQuality() {
+        return resizeQuality;
+    }
+
+    public void setResizeQuality(CameraProResizeQuality resizeQuality) {
+        this.resizeQuality = resizeQuality;
+    }
+
     public boolean isShouldCorrectOrientation() {
         return shouldCorrectOrientation;
     }
@@ -64,6 +84,62 @@ public class CameraProSettings {
         this.allowEditing = allowEditing;
     }
 
+    public boolean isProgressive() {
+        return progressive;
+    }
+
+    public void setProgressive(boolean progressive) {
+        this.progressive = progressive;
+    }
+
+    public boolean isPreview() {
+        return preview;
+    }
+
+    public void setPreview(boolean preview) {
+        this.preview = preview;
+    }
+
+    public boolean isMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(boolean metrics) {
+        this.metrics = metrics;
+    }
+
+    public String[] getExifTags() {
+        return exifTags;
+    }
+
+    public void setExifTags(String[] exifTags) {
+        this.exifTags = exifTags;
+    }
+
+    public CameraProOutputFormat getFormat() {
+        return format;
+    }
+
+    public void setFormat(CameraProOutputFormat format) {
+        this.format = format;
+    }
+
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(int maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public List<CameraProDerivative> getDerivatives() {
+        return derivatives;
+    }
+
+    public void setDerivatives(List<CameraProDerivative> derivatives) {
+        this.derivatives = derivatives;
+    }
+
     public int getWidth() {
         return width;
     }
@@ -87,4 +163,23 @@ public class CameraProSettings {
     public void setSource(CameraProSource source) {
         this.source = source;
     }
+
+    /**
+     * Get a key identifying the output these settings produce for an image, the settings
+     * that don't change the output file or the returned exif data are left out
+     * @return
+     */
+    public String getOutputKey() {
+        StringBuilder key = new StringBuilder();
+        key.append(format.getOption()).append('|').append(quality).append('|').append(maxBytes);
+        key.append('|').append(shouldResize).append(':').append(width).append('x').append(height);
+        key.append(':').append(resizeQuality.getQuality());
+        key.append('|').append(shouldCorrectOrientation);
+        key.append('|').append(exifTags != null ? Arrays.toString(exifTags) : "*");
+        for (CameraProDerivative derivative : derivatives) {
+            key.append('|').append(derivative.getWidth()).append('x').append(derivative.getHeight());
+            key.append(':').append(derivative.getQuality()).append(':').append(derivative.getFormat().getOption());
+        }
+        return key.toString();
+    }
 }
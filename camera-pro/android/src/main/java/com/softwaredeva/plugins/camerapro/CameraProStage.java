@@ -0,0 +1,35 @@
+package com.softwaredeva.plugins.camerapro;
+
+/**
+ * The timed stages of the image pipeline
+ */
+public enum CameraProStage {
+    // From launching the camera or the picker until its result comes back, user time included
+    INTENT("intent"),
+    EDIT("edit"),
+    // Waiting for the pixel memory budget to admit the decode
+    WAIT("wait"),
+    DECODE("decode"),
+    EXIF("exif"),
+    // Orientation correction and resize, applied as a single transform
+    TRANSFORM("transform"),
+    DERIVATIVES("derivatives"),
+    // Compression to memory, for base64 and data url results
+    ENCODE("encode"),
+    BASE64("base64"),
+    // Compression straight to a file, for file results
+    WRITE("write"),
+    GALLERY("gallery"),
+    // From the call to its result
+    TOTAL("total");
+
+    private String stage;
+
+    CameraProStage(String stage) {
+        this.stage = stage;
+    }
+
+    public String getStage() {
+        return stage;
+    }
+}
@@ -0,0 +1,45 @@
+package com.softwaredeva.plugins.camerapro;
+
+public class CameraProThumbnailSettings {
+
+    public static final int DEFAULT_KEYFRAMES = 0;
+    public static final int MAX_KEYFRAMES = 50;
+    public static final int DEFAULT_QUALITY = 80;
+
+    private int keyframes = DEFAULT_KEYFRAMES;
+    private int width = 0;
+    private int height = 0;
+    private int quality = DEFAULT_QUALITY;
+
+    public int getKeyframes() {
+        return keyframes;
+    }
+
+    public void setKeyframes(int keyframes) {
+        this.keyframes = keyframes;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    public int getQuality() {
+        return quality;
+    }
+
+    public void setQuality(int quality) {
+        this.quality = quality;
+    }
+}
@@ -0,0 +1,116 @@
+package com.softwaredeva.plugins.camerapro;
+
+import android.os.SystemClock;
+import com.getcapacitor.JSObject;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The time spent in each stage of the pipeline by a single call, and the size of the data it
+ * went through. Times are taken from a monotonic clock. Stages that run more than once,
+ * ex: for every image of a batch, add up.
+ */
+public class CameraProTimings {
+
+    // Byte counters
+    static final String DECODED_BYTES = "decoded";
+    static final String ENCODED_BYTES = "encoded";
+    static final String BASE64_BYTES = "base64";
+
+    private final long startTime = now();
+    private long activityStartTime = -1;
+    private final Map<CameraProStage, Long> durations = new EnumMap<>(CameraProStage.class);
+    private final Map<String, Long> bytes = new LinkedHashMap<>();
+
+    /**
+     * The current time of the monotonic clock, to pass to {@link #add}
+     * @return
+     */
+    public static long now() {
+        return SystemClock.elapsedRealtimeNanos();
+    }
+
+    /**
+     * Add the time elapsed since start to a stage
+     * @param stage
+     * @param start the time the stage started, from {@link #now()}
+     */
+    public synchronized void add(CameraProStage stage, long start) {
+        addDuration(stage, now() - start);
+    }
+
+    /**
+     * Add a duration measured elsewhere to a stage
+     * @param stage
+     * @param nanos
+     */
+    public synchronized void addDuration(CameraProStage stage, long nanos) {
+        Long previous = durations.get(stage);
+        durations.put(stage, previous != null ? previous + nanos : nanos);
+    }
+
+    public synchronized void addBytes(String counter, long count) {
+        Long previous = bytes.get(counter);
+        bytes.put(counter, previous != null ? previous + count : count);
+    }
+
+    /**
+     * Mark the launch of an activity whose result the call waits for
+     */
+    public synchronized void startActivity() {
+        activityStartTime = now();
+    }
+
+    /**
+     * Add the time since the launch of the activity to a stage, if one was launched
+     * @param stage
+     */
+    public synchronized void stopActivity(CameraProStage stage) {
+        if (activityStartTime >= 0) {
+            add(stage, activityStartTime);
+            activityStartTime = -1;
+        }
+    }
+
+    /**
+     * Set the total time of the call, once it has its result
+     */
+    public synchronized void finish() {
+        durations.put(CameraProStage.TOTAL, now() - startTime);
+    }
+
+    /**
+     * The nanoseconds spent in each stage that ran
+     */
+    public synchronized Map<CameraProStage, Long> getDurations() {
+        return new EnumMap<>(durations);
+    }
+
+    public synchronized Map<String, Long> getBytes() {
+        return new LinkedHashMap<>(bytes);
+    }
+
+    /**
+     * Get the timings to return with the result, durations in milliseconds
+     * @return
+     */
+    public synchronized JSObject toJson() {
+        JSObject stages = new JSObject();
+        for (Map.Entry<CameraProStage, Long> entry : durations.entrySet()) {
+            stages.put(entry.getKey().getStage(), toMillis(entry.getValue()));
+        }
+        JSObject counters = new JSObject();
+        for (Map.Entry<String, Long> entry : bytes.entrySet()) {
+            counters.put(entry.getKey(), (long) entry.getValue());
+        }
+        JSObject ret = new JSObject();
+        ret.put("durations", stages);
+        ret.put("bytes", counters);
+        return ret;
+    }
+
+    static double toMillis(long nanos) {
+        return nanos / 1000000.0;
+    }
+}
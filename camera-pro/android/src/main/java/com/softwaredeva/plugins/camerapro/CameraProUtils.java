@@ -12,6 +12,10 @@ import java.util.Date;
 
 public class CameraProUtils {
 
+    // Prefixes of the files the camera writes to
+    public static final String IMAGE_FILE_PREFIX = "JPEG_";
+    public static final String VIDEO_FILE_PREFIX = "MPEG-4_";
+
     public static Uri createImageFileUri(Activity activity, String appId) throws IOException {
         File photoFile = CameraProUtils.createImageFile(activity);
         return FileProvider.getUriForFile(activity, appId + ".fileprovider", photoFile);
@@ -20,7 +24,7 @@ public class CameraProUtils {
     public static File createImageFile(Activity activity) throws IOException {
         // Create an image file name
         String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
-        String imageFileName = "JPEG_" + timeStamp + "_";
+        String imageFileName = IMAGE_FILE_PREFIX + timeStamp + "_";
         File storageDir = activity.getExternalFilesDir(Environment.DIRECTORY_PICTURES);
 
         File image = File.createTempFile(imageFileName, /* prefix */".jpg", /* suffix */storageDir/* directory */);
@@ -31,7 +35,7 @@ public class CameraProUtils {
     public static File createVideoFile(Activity activity) throws IOException {
         // Create an video file name
         String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
-        String videoFileName = "MPEG-4_" + timeStamp + "_";
+        String videoFileName = VIDEO_FILE_PREFIX + timeStamp + "_";
         File storageDir = activity.getExternalFilesDir(Environment.DIRECTORY_PICTURES);
 
         File video = File.createTempFile(videoFileName, /* prefix */".mp4", /* suffix */storageDir/* directory */);
@@ -39,6 +43,15 @@ public class CameraProUtils {
         return video;
     }
 
+    /**
+     * Check if the file was created by {@link #createImageFile} or {@link #createVideoFile}
+     * @param name
+     * @return
+     */
+    public static boolean isCameraFile(String name) {
+        return name.startsWith(IMAGE_FILE_PREFIX) || name.startsWith(VIDEO_FILE_PREFIX);
+    }
+
     protected static String getLogTag() {
         return Logger.tags("CameraProUtils");
     }
@@ -10,6 +10,7 @@ public class CameraProVideoSettings {
     private boolean saveToGallery = DEFAULT_SAVE_VIDEO_TO_GALLERY;
     private CameraProVideoSource source = CameraProVideoSource.PROMPT;
     private int duration = DEFAULT_DURATION;
+    private CameraProThumbnailSettings thumbnails;
 
     public boolean getHighquality() {
         return highquality;
@@ -42,4 +43,15 @@ public class CameraProVideoSettings {
     public void setDuration(int duration) {
         this.duration = duration;
     }
+
+    /**
+     * @return the thumbnails to extract from the video, null if none were asked for
+     */
+    public CameraProThumbnailSettings getThumbnails() {
+        return thumbnails;
+    }
+
+    public void setThumbnails(CameraProThumbnailSettings thumbnails) {
+        this.thumbnails = thumbnails;
+    }
 }
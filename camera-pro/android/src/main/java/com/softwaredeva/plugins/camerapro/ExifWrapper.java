@@ -4,11 +4,70 @@ import static androidx.exifinterface.media.ExifInterface.*;
 
 import androidx.exifinterface.media.ExifInterface;
 import com.getcapacitor.JSObject;
+import com.getcapacitor.Logger;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
 
 public class ExifWrapper {
 
-    private final ExifInterface exif;
-    private final String[] attributes = new String[] {
+    // exifTags presets
+    public static final String TAGS_NONE = "none";
+    public static final String TAGS_ESSENTIAL = "essential";
+    public static final String TAGS_GPS = "gps";
+    public static final String TAGS_FULL = "full";
+
+    // Decimal values computed from the GPS tags
+    public static final String GPS_LATITUDE_DECIMAL = "GPSLatitudeDecimal";
+    public static final String GPS_LONGITUDE_DECIMAL = "GPSLongitudeDecimal";
+    public static final String GPS_ALTITUDE_DECIMAL = "GPSAltitudeDecimal";
+
+    private static final String[] ESSENTIAL_ATTRIBUTES = new String[] {
+        TAG_DATETIME,
+        TAG_DATETIME_ORIGINAL,
+        TAG_EXPOSURE_TIME,
+        TAG_FLASH,
+        TAG_FOCAL_LENGTH,
+        TAG_F_NUMBER,
+        TAG_IMAGE_LENGTH,
+        TAG_IMAGE_WIDTH,
+        TAG_MAKE,
+        TAG_MODEL,
+        TAG_OFFSET_TIME_ORIGINAL,
+        TAG_ORIENTATION,
+        TAG_PHOTOGRAPHIC_SENSITIVITY,
+        TAG_PIXEL_X_DIMENSION,
+        TAG_PIXEL_Y_DIMENSION,
+        TAG_WHITE_BALANCE
+    };
+
+    private static final String[] GPS_ATTRIBUTES = new String[] {
+        TAG_GPS_ALTITUDE,
+        TAG_GPS_ALTITUDE_REF,
+        TAG_GPS_DATESTAMP,
+        TAG_GPS_IMG_DIRECTION,
+        TAG_GPS_IMG_DIRECTION_REF,
+        TAG_GPS_LATITUDE,
+        TAG_GPS_LATITUDE_REF,
+        TAG_GPS_LONGITUDE,
+        TAG_GPS_LONGITUDE_REF,
+        TAG_GPS_SPEED,
+        TAG_GPS_SPEED_REF,
+        TAG_GPS_TIMESTAMP
+    };
+
+    private static final String[] NO_ATTRIBUTES = new String[0];
+
+    // SOI and EOI markers, the smallest JPEG ExifInterface will save tags to
+    private static final byte[] EMPTY_JPEG = new byte[] { (byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xD9 };
+
+    private static final String[] ALL_ATTRIBUTES = new String[] {
         TAG_APERTURE_VALUE,
         TAG_ARTIST,
         TAG_BITS_PER_SAMPLE,
@@ -163,8 +222,45 @@ public class ExifWrapper {
         TAG_Y_RESOLUTION
     };
 
+    private final ExifInterface exif;
+    private final String[] attributes;
+    private Map<String, String> values;
+    private Map<String, String> allValues;
+    private double[] latLong;
+
     public ExifWrapper(ExifInterface exif) {
+        this(exif, ALL_ATTRIBUTES);
+    }
+
+    /**
+     * Wrap the given exif data, only returning the given tags in the JSON. The exif segment
+     * written with the image always carries every tag.
+     * @param exif
+     * @param attributes the tags to return, see {@link #resolveTags(String)}
+     */
+    public ExifWrapper(ExifInterface exif, String[] attributes) {
         this.exif = exif;
+        this.attributes = attributes != null ? attributes : ALL_ATTRIBUTES;
+    }
+
+    /**
+     * Resolve an exifTags preset to the tags it returns
+     * @param preset one of none, essential, gps or full
+     * @return the tags, or null for an unknown preset
+     */
+    public static String[] resolveTags(String preset) {
+        switch (preset.toLowerCase(Locale.ROOT)) {
+            case TAGS_NONE:
+                return NO_ATTRIBUTES;
+            case TAGS_ESSENTIAL:
+                return ESSENTIAL_ATTRIBUTES;
+            case TAGS_GPS:
+                return GPS_ATTRIBUTES;
+            case TAGS_FULL:
+                return ALL_ATTRIBUTES;
+            default:
+                return null;
+        }
     }
 
     public JSObject toJson() {
@@ -174,32 +270,120 @@ public class ExifWrapper {
             return ret;
         }
 
-        for (int i = 0; i < attributes.length; i++) {
-            p(ret, attributes[i]);
+        for (Map.Entry<String, String> entry : getValues().entrySet()) {
+            ret.put(entry.getKey(), entry.getValue());
+        }
+        if (latLong != null) {
+            ret.put(GPS_LATITUDE_DECIMAL, latLong[0]);
+            ret.put(GPS_LONGITUDE_DECIMAL, latLong[1]);
+            if (values.containsKey(TAG_GPS_ALTITUDE)) {
+                ret.put(GPS_ALTITUDE_DECIMAL, exif.getAltitude(0));
+            }
         }
 
         return ret;
     }
 
-    public void p(JSObject o, String tag) {
-        String val = exif.getAttribute(tag);
-        o.put(tag, val);
-    }
-
-    public void copyExif(String destFile) {
+    /**
+     * Build the exif APP1 segment with every tag of the image, to be inserted in a JPEG stream with
+     * {@link JpegExifOutputStream}. ExifInterface can only save to files, so the tags are saved
+     * to an empty JPEG and the segment is read back from it; the image itself is never rewritten.
+     * @param cacheDir where to write the empty JPEG
+     * @return the segment, marker and length included, or null if there is nothing to write or
+     * the segment couldn't be built
+     */
+    public byte[] toJpegSegment(File cacheDir) {
+        if (exif == null) {
+            return null;
+        }
+        File template = null;
         try {
-            ExifInterface destExif = new ExifInterface(destFile);
-            for (int i = 0; i < attributes.length; i++) {
-                String value = exif.getAttribute(attributes[i]);
-                if (value != null) {
-                    destExif.setAttribute(attributes[i], value);
-                }
+            template = File.createTempFile("exif", ".jpg", cacheDir);
+            try (FileOutputStream out = new FileOutputStream(template)) {
+                out.write(EMPTY_JPEG);
+            }
+            ExifInterface destExif = new ExifInterface(template.getAbsolutePath());
+            // The exifTags option only filters the JSON, the copy keeps all the tags
+            for (Map.Entry<String, String> entry : getAllValues().entrySet()) {
+                destExif.setAttribute(entry.getKey(), entry.getValue());
             }
             destExif.saveAttributes();
-        } catch (Exception ex) {}
+            return readApp1Segment(template);
+        } catch (IOException ex) {
+            Logger.error("Unable to build the exif segment", ex);
+            return null;
+        } finally {
+            if (template != null) {
+                template.delete();
+            }
+        }
+    }
+
+    private static byte[] readApp1Segment(File jpeg) throws IOException {
+        byte[] bytes = new byte[(int) jpeg.length()];
+        try (DataInputStream in = new DataInputStream(new FileInputStream(jpeg))) {
+            in.readFully(bytes);
+        }
+        // SOI, then the APP1 segment ExifInterface writes right after it
+        if (bytes.length < 6 || (bytes[2] & 0xFF) != 0xFF || (bytes[3] & 0xFF) != 0xE1) {
+            return null;
+        }
+        int length = ((bytes[4] & 0xFF) << 8) | (bytes[5] & 0xFF);
+        if (4 + length > bytes.length) {
+            return null;
+        }
+        return Arrays.copyOfRange(bytes, 2, 4 + length);
     }
 
     public void resetOrientation() {
-        exif.resetOrientation();
+        if (exif != null) {
+            exif.resetOrientation();
+            String orientation = exif.getAttribute(TAG_ORIENTATION);
+            if (values != null && values.containsKey(TAG_ORIENTATION)) {
+                values.put(TAG_ORIENTATION, orientation);
+            }
+            if (allValues != null && allValues.containsKey(TAG_ORIENTATION)) {
+                allValues.put(TAG_ORIENTATION, orientation);
+            }
+        }
+    }
+
+    /**
+     * Read the requested tags once, skipping the ones the image doesn't have
+     * @return the tag values by tag name
+     */
+    private Map<String, String> getValues() {
+        if (values == null) {
+            values = readValues(attributes);
+            if (values.containsKey(TAG_GPS_LATITUDE) && values.containsKey(TAG_GPS_LONGITUDE)) {
+                latLong = exif.getLatLong();
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Read every known tag once, for the copy written with the image
+     * @return the tag values by tag name
+     */
+    private Map<String, String> getAllValues() {
+        if (attributes == ALL_ATTRIBUTES) {
+            return getValues();
+        }
+        if (allValues == null) {
+            allValues = readValues(ALL_ATTRIBUTES);
+        }
+        return allValues;
+    }
+
+    private Map<String, String> readValues(String[] tags) {
+        Map<String, String> read = new LinkedHashMap<>();
+        for (String tag : tags) {
+            String value = exif.getAttribute(tag);
+            if (value != null) {
+                read.put(tag, value);
+            }
+        }
+        return read;
     }
 }
@@ -0,0 +1,229 @@
+package com.softwaredeva.plugins.camerapro;
+
+import android.graphics.Bitmap;
+import androidx.heifwriter.HeifWriter;
+import com.getcapacitor.Logger;
+import com.softwaredeva.plugins.camerapro.core.QualitySearch;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Encodes bitmaps in one output format and quality, either straight to a file or into memory.
+ * With a byte budget, the highest quality that fits is searched for, and the image is
+ * downscaled when even the lowest quality doesn't fit.
+ */
+public class ImageEncoder {
+
+    // Output buffer for images compressed to disk
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final long HEIF_WRITE_TIMEOUT_MS = 10000;
+
+    // Budget search bounds
+    static final int MIN_QUALITY = 10;
+    static final int MAX_QUALITY_STEPS = 7;
+    static final int MAX_DOWNSCALE_STEPS = 4;
+    private static final float MIN_DOWNSCALE_FACTOR = 0.25f;
+    private static final float MAX_DOWNSCALE_FACTOR = 0.9f;
+
+    private final CameraProOutputFormat format;
+    private final int quality;
+    private final int maxBytes;
+    private final File cacheDir;
+
+    /**
+     * @param format
+     * @param quality
+     * @param maxBytes the maximum size of the encoded image, 0 for no limit
+     * @param cacheDir directory for the temporary files of the HEIF encoder
+     */
+    public ImageEncoder(CameraProOutputFormat format, int quality, int maxBytes, File cacheDir) {
+        this.format = format;
+        this.quality = quality;
+        this.maxBytes = maxBytes;
+        this.cacheDir = cacheDir;
+    }
+
+    public CameraProOutputFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Encode the bitmap into the output file. Without a byte budget the bitmap is compressed
+     * straight into the file, so the encoded image is never held in memory as a whole.
+     * @param outFile
+     * @param bitmap
+     * @param exifSegment exif APP1 segment to insert in the JPEG stream, or null
+     * @throws IOException
+     */
+    public void writeTo(File outFile, Bitmap bitmap, byte[] exifSegment) throws IOException {
+        if (format != CameraProOutputFormat.JPEG) {
+            exifSegment = null;
+        }
+        ByteArrayOutputStream encoded = null;
+        if (maxBytes > 0) {
+            int exifLength = exifSegment != null ? exifSegment.length : 0;
+            encoded = encodeWithinBudget(bitmap, maxBytes - exifLength);
+        } else if (format == CameraProOutputFormat.HEIF) {
+            writeHeif(outFile, bitmap, quality);
+            return;
+        }
+        OutputStream fos = new BufferedOutputStream(new FileOutputStream(outFile), WRITE_BUFFER_SIZE);
+        if (exifSegment != null) {
+            fos = new JpegExifOutputStream(fos, exifSegment);
+        }
+        try (OutputStream out = fos) {
+            if (encoded != null) {
+                encoded.writeTo(out);
+            } else {
+                compress(bitmap, quality, out);
+            }
+        }
+    }
+
+    /**
+     * Encode the bitmap into memory
+     * @param bitmap
+     * @return
+     * @throws IOException
+     */
+    public ByteArrayOutputStream encode(Bitmap bitmap) throws IOException {
+        if (maxBytes > 0) {
+            return encodeWithinBudget(bitmap, maxBytes);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encode(bitmap, quality, out);
+        return out;
+    }
+
+    /**
+     * Search the highest quality that fits in the budget with a bounded binary search, see
+     * {@link QualitySearch}, downscaling while even the lowest quality is over budget.
+     * Two buffers are reused for all the attempts, one holding the best fit found so far.
+     * @param bitmap
+     * @param budget
+     * @return
+     * @throws IOException if the image doesn't fit even after downscaling
+     */
+    private ByteArrayOutputStream encodeWithinBudget(Bitmap bitmap, int budget) throws IOException {
+        ByteArrayOutputStream attempt = new ByteArrayOutputStream();
+        ByteArrayOutputStream best = new ByteArrayOutputStream();
+        boolean searchQuality = supportsQuality();
+        Bitmap current = bitmap;
+        try {
+            for (int step = 0; step <= MAX_DOWNSCALE_STEPS; step++) {
+                encode(current, quality, attempt);
+                if (attempt.size() <= budget) {
+                    return attempt;
+                }
+                int smallest = attempt.size();
+                if (searchQuality && quality > MIN_QUALITY) {
+                    QualitySearch search = new QualitySearch(MIN_QUALITY, quality - 1, MAX_QUALITY_STEPS);
+                    for (int q = search.next(); q >= 0; q = search.next()) {
+                        encode(current, q, attempt);
+                        boolean fits = attempt.size() <= budget;
+                        if (fits) {
+                            ByteArrayOutputStream swap = best;
+                            best = attempt;
+                            attempt = swap;
+                        } else {
+                            smallest = Math.min(smallest, attempt.size());
+                        }
+                        search.report(fits);
+                    }
+                    if (search.getBest() >= 0) {
+                        return best;
+                    }
+                }
+
+                // Even the lowest quality is over budget, only fewer pixels fit. Size grows
+                // roughly with the pixel count, scale both sides by the square root
+                float factor = (float) Math.sqrt((double) budget / smallest);
+                factor = Math.max(MIN_DOWNSCALE_FACTOR, Math.min(MAX_DOWNSCALE_FACTOR, factor));
+                int width = Math.round(current.getWidth() * factor);
+                int height = Math.round(current.getHeight() * factor);
+                if (width < 1 || height < 1) {
+                    break;
+                }
+                Logger.debug("Image doesn't fit in " + budget + " bytes, downscaling to " + width + "x" + height);
+                Bitmap scaled = Bitmap.createScaledBitmap(current, width, height, true);
+                if (current != bitmap) {
+                    current.recycle();
+                }
+                current = scaled;
+            }
+        } finally {
+            if (current != bitmap) {
+                current.recycle();
+            }
+        }
+        throw new IOException("Unable to encode image in " + budget + " bytes, even at quality " + MIN_QUALITY + " once downscaled");
+    }
+
+    private boolean supportsQuality() {
+        // PNG ignores the quality, and lossless WebP only trades encoding speed with it
+        return format != CameraProOutputFormat.PNG && format != CameraProOutputFormat.WEBP_LOSSLESS;
+    }
+
+    private void encode(Bitmap bitmap, int quality, ByteArrayOutputStream out) throws IOException {
+        out.reset();
+        if (format != CameraProOutputFormat.HEIF) {
+            compress(bitmap, quality, out);
+            return;
+        }
+        // The HEIF encoder only writes to files
+        File heifFile = File.createTempFile("heif", "." + format.getExtension(), cacheDir);
+        try {
+            writeHeif(heifFile, bitmap, quality);
+            try (FileInputStream in = new FileInputStream(heifFile)) {
+                byte[] buffer = new byte[WRITE_BUFFER_SIZE];
+                int len;
+                while ((len = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, len);
+                }
+            }
+        } finally {
+            heifFile.delete();
+        }
+    }
+
+    private void compress(Bitmap bitmap, int quality, OutputStream out) throws IOException {
+        if (!bitmap.compress(format.getCompressFormat(), format.getCompressQuality(quality), out)) {
+            throw new IOException("Unable to compress image as " + format.getOption());
+        }
+    }
+
+    /**
+     * Encode the bitmap as a single image HEIF file, only available from Android 9,
+     * see {@link CameraProOutputFormat#resolve()}
+     * @param outFile
+     * @param bitmap
+     * @param quality
+     * @throws IOException
+     */
+    private void writeHeif(File outFile, Bitmap bitmap, int quality) throws IOException {
+        try (
+            HeifWriter writer = new HeifWriter.Builder(
+                outFile.getAbsolutePath(),
+                bitmap.getWidth(),
+                bitmap.getHeight(),
+                HeifWriter.INPUT_MODE_BITMAP
+            )
+                .setQuality(quality)
+                .setMaxImages(1)
+                .build()
+        ) {
+            writer.start();
+            writer.addBitmap(bitmap);
+            writer.stop(HEIF_WRITE_TIMEOUT_MS);
+        } catch (IOException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new IOException("Unable to encode HEIF image to " + outFile, ex);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+package com.softwaredeva.plugins.camerapro;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+import android.system.StructStat;
+import androidx.exifinterface.media.ExifInterface;
+import com.getcapacitor.Logger;
+import com.softwaredeva.plugins.camerapro.core.ImageGeometry;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+
+/**
+ * An image opened once for the whole processing pipeline. The bounds, the exif data, the
+ * orientation and the decoded pixels are all read from the same file descriptor, so a content
+ * uri is only opened once per image. Providers that can't hand out a seekable descriptor are
+ * read into memory once instead.
+ */
+public class ImageSource implements Closeable {
+
+    private final Uri uri;
+    private ParcelFileDescriptor descriptor;
+    private byte[] data;
+
+    private boolean boundsDecoded = false;
+    private int width = -1;
+    private int height = -1;
+    private String mimeType;
+
+    private boolean exifParsed = false;
+    private ExifInterface exifInterface;
+    private ExifWrapper exif;
+
+    private ImageSource(Uri uri, ParcelFileDescriptor descriptor, byte[] data) {
+        this.uri = uri;
+        this.descriptor = descriptor;
+        this.data = data;
+    }
+
+    /**
+     * Open the image behind the given uri, through a file descriptor where possible
+     * @param c
+     * @param uri
+     * @return
+     * @throws FileNotFoundException if the uri can't be opened
+     */
+    public static ImageSource open(final Context c, final Uri uri) throws FileNotFoundException {
+        ParcelFileDescriptor descriptor = c.getContentResolver().openFileDescriptor(uri, "r");
+        if (descriptor == null) {
+            throw new FileNotFoundException("Unable to open " + uri);
+        }
+        if (isSeekable(descriptor.getFileDescriptor())) {
+            return new ImageSource(uri, descriptor, null);
+        }
+
+        // Pipes and some cloud providers can't seek, keep the bytes we read instead of reopening
+        try (InputStream stream = new ParcelFileDescriptor.AutoCloseInputStream(descriptor)) {
+            return new ImageSource(uri, null, readFully(stream));
+        } catch (IOException ex) {
+            FileNotFoundException notFound = new FileNotFoundException("Unable to read " + uri);
+            notFound.initCause(ex);
+            throw notFound;
+        }
+    }
+
+    public Uri getUri() {
+        return uri;
+    }
+
+    public int getWidth() {
+        decodeBounds();
+        return width;
+    }
+
+    public int getHeight() {
+        decodeBounds();
+        return height;
+    }
+
+    public String getMimeType() {
+        decodeBounds();
+        return mimeType;
+    }
+
+    /**
+     * Get a fingerprint of the image content from its size and modification time,
+     * so a changed image behind the same uri isn't mistaken for the previous one
+     * @return the fingerprint, or null if the image was read from a stream and has none
+     */
+    public String getFingerprint() {
+        if (descriptor == null) {
+            return null;
+        }
+        try {
+            StructStat stat = Os.fstat(descriptor.getFileDescriptor());
+            return stat.st_size + ":" + stat.st_mtime;
+        } catch (ErrnoException ex) {
+            Logger.error("Unable to stat image " + uri, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Get the exif data of the image, parsed on first use
+     * @param tags the tags to read from it, null for all of them
+     * @return
+     */
+    public ExifWrapper getExif(String[] tags) {
+        parseExif();
+        if (exif == null) {
+            exif = new ExifWrapper(exifInterface, tags);
+        }
+        return exif;
+    }
+
+    /**
+     * Get the rotation in degrees needed to display the image upright, from its exif data
+     * @return 0, 90, 180 or 270
+     */
+    public int getOrientation() {
+        parseExif();
+        if (exifInterface == null) {
+            return 0;
+        }
+        final int orientation = exifInterface.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        if (orientation == ExifInterface.ORIENTATION_ROTATE_90) {
+            return 90;
+        } else if (orientation == ExifInterface.ORIENTATION_ROTATE_180) {
+            return 180;
+        } else if (orientation == ExifInterface.ORIENTATION_ROTATE_270) {
+            return 270;
+        }
+        return 0;
+    }
+
+    /**
+     * Get the thumbnail embedded in the exif data, without decoding the image itself
+     * @return the thumbnail, not rotated, or null if the image has none
+     */
+    public Bitmap getThumbnail() {
+        parseExif();
+        if (exifInterface == null || !exifInterface.hasThumbnail()) {
+            return null;
+        }
+        // The thumbnail may be read from the descriptor, past the exif header
+        if (descriptor != null && !rewind()) {
+            return null;
+        }
+        return exifInterface.getThumbnailBitmap();
+    }
+
+    /**
+     * Get the sample size to decode the image with so it's no larger than needed to produce
+     * the requested width and height, and its ARGB_8888 pixels fit in maxBytes
+     * @param reqWidth
+     * @param reqHeight
+     * @param maxBytes 0 for no limit
+     * @return
+     */
+    public int getSampleSize(final int reqWidth, final int reqHeight, final long maxBytes) {
+        int sampleSize = ImageUtils.calculateInSampleSize(getWidth(), getHeight(), reqWidth, reqHeight);
+        if (maxBytes > 0 && getWidth() > 0 && getHeight() > 0) {
+            sampleSize = ImageGeometry.fitSampleSize(getWidth(), getHeight(), sampleSize, 4, maxBytes);
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Decode the image with the given sample size and pixel format
+     * @param sampleSize
+     * @param config
+     * @return the decoded Bitmap, or null if the image could not be decoded
+     */
+    public Bitmap decode(final int sampleSize, final Bitmap.Config config) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = config;
+        return decode(options);
+    }
+
+    /**
+     * Decode the image with the given options
+     * @param options
+     * @return the decoded Bitmap, or null if the image could not be decoded
+     */
+    public Bitmap decode(final BitmapFactory.Options options) {
+        if (data != null) {
+            return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        }
+        if (descriptor == null || !rewind()) {
+            return null;
+        }
+        return BitmapFactory.decodeFileDescriptor(descriptor.getFileDescriptor(), null, options);
+    }
+
+    /**
+     * Copy the original bytes of the image to the given file, without decoding them
+     * @param dest
+     * @throws IOException
+     */
+    public void copyTo(final File dest) throws IOException {
+        if (data != null) {
+            try (FileOutputStream out = new FileOutputStream(dest)) {
+                out.write(data);
+            }
+            return;
+        }
+        if (descriptor == null) {
+            throw new IOException("Image source is closed");
+        }
+        try (
+            FileInputStream in = new ParcelFileDescriptor.AutoCloseInputStream(descriptor.dup());
+            FileChannel inChannel = in.getChannel();
+            FileOutputStream out = new FileOutputStream(dest);
+            FileChannel outChannel = out.getChannel()
+        ) {
+            long size = inChannel.size();
+            long position = 0;
+            while (position < size) {
+                long transferred = inChannel.transferTo(position, size - position, outChannel);
+                if (transferred <= 0) {
+                    break;
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    private void decodeBounds() {
+        if (boundsDecoded) {
+            return;
+        }
+        boundsDecoded = true;
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        decode(options);
+        width = options.outWidth;
+        height = options.outHeight;
+        mimeType = options.outMimeType;
+    }
+
+    private void parseExif() {
+        if (exifParsed) {
+            return;
+        }
+        exifParsed = true;
+        try {
+            if (data != null) {
+                exifInterface = new ExifInterface(new ByteArrayInputStream(data));
+            } else if (descriptor != null && rewind()) {
+                exifInterface = new ExifInterface(descriptor.getFileDescriptor());
+            }
+        } catch (IOException ex) {
+            Logger.error("Error loading exif data from image", ex);
+        }
+    }
+
+    private boolean rewind() {
+        try {
+            Os.lseek(descriptor.getFileDescriptor(), 0, OsConstants.SEEK_SET);
+            return true;
+        } catch (ErrnoException ex) {
+            Logger.error("Unable to rewind image " + uri, ex);
+            return false;
+        }
+    }
+
+    private static boolean isSeekable(final FileDescriptor fd) {
+        try {
+            Os.lseek(fd, 0, OsConstants.SEEK_CUR);
+            return true;
+        } catch (ErrnoException ex) {
+            return false;
+        }
+    }
+
+    private static byte[] readFully(final InputStream stream) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        int len;
+        while ((len = stream.read(buffer)) != -1) {
+            out.write(buffer, 0, len);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public void close() {
+        if (descriptor != null) {
+            try {
+                descriptor.close();
+            } catch (IOException ignored) {}
+            descriptor = null;
+        }
+        data = null;
+    }
+}
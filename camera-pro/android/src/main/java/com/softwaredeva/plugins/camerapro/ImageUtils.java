@@ -1,16 +1,9 @@
 package com.softwaredeva.plugins.camerapro;
 
-import android.content.Context;
-import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.graphics.Matrix;
-import android.net.Uri;
-import android.os.Build;
-import android.provider.MediaStore;
-import androidx.exifinterface.media.ExifInterface;
-import com.getcapacitor.Logger;
-import java.io.IOException;
-import java.io.InputStream;
+import com.softwaredeva.plugins.camerapro.core.AreaDownscaler;
+import com.softwaredeva.plugins.camerapro.core.ImageGeometry;
 
 public class ImageUtils {
 
@@ -22,7 +15,19 @@ public class ImageUtils {
      * @return a new, scaled Bitmap
      */
     public static Bitmap resize(Bitmap bitmap, final int width, final int height) {
-        return ImageUtils.resizePreservingAspectRatio(bitmap, width, height);
+        return ImageUtils.resizePreservingAspectRatio(bitmap, width, height, CameraProResizeQuality.SPEED);
+    }
+
+    /**
+     * Resize an image to the given max width and max height, preserving its aspect ratio
+     * @param bitmap
+     * @param width
+     * @param height
+     * @param quality SPEED for an unfiltered scale, QUALITY to average all the source pixels
+     * @return a new, scaled Bitmap
+     */
+    public static Bitmap resize(Bitmap bitmap, final int width, final int height, final CameraProResizeQuality quality) {
+        return ImageUtils.resizePreservingAspectRatio(bitmap, width, height, quality);
     }
 
     /**
@@ -31,25 +36,137 @@ public class ImageUtils {
      * @param bitmap
      * @param desiredMaxWidth
      * @param desiredMaxHeight
+     * @param quality
+     * @return a new, scaled Bitmap
+     */
+    private static Bitmap resizePreservingAspectRatio(
+        Bitmap bitmap,
+        final int desiredMaxWidth,
+        final int desiredMaxHeight,
+        final CameraProResizeQuality quality
+    ) {
+        int[] size = getResizedDimensions(bitmap.getWidth(), bitmap.getHeight(), desiredMaxWidth, desiredMaxHeight);
+        if (quality == CameraProResizeQuality.QUALITY) {
+            return downscaleByArea(bitmap, size[0], size[1]);
+        }
+        return Bitmap.createScaledBitmap(bitmap, size[0], size[1], false);
+    }
+
+    /**
+     * Downscale an image by averaging blocks of pixels first, then with a filtered scale to the
+     * exact size, see {@link AreaDownscaler}. The source pixels are read a strip of rows at a time,
+     * so only the reduced image is copied out of the bitmap.
+     * @param bitmap
+     * @param width
+     * @param height
      * @return a new, scaled Bitmap
      */
-    private static Bitmap resizePreservingAspectRatio(Bitmap bitmap, final int desiredMaxWidth, final int desiredMaxHeight) {
-        int width = bitmap.getWidth();
-        int height = bitmap.getHeight();
+    private static Bitmap downscaleByArea(final Bitmap bitmap, final int width, final int height) {
+        final int factor = AreaDownscaler.getBoxFactor(bitmap.getWidth(), bitmap.getHeight(), width, height);
+        if (factor < 2) {
+            return Bitmap.createScaledBitmap(bitmap, width, height, true);
+        }
 
-        // 0 is treated as 'no restriction'
-        int maxHeight = desiredMaxHeight == 0 ? height : desiredMaxHeight;
-        int maxWidth = desiredMaxWidth == 0 ? width : desiredMaxWidth;
+        Bitmap reducedBitmap = boxReduce(bitmap, factor);
+        if (reducedBitmap.getWidth() == width && reducedBitmap.getHeight() == height) {
+            return reducedBitmap;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(reducedBitmap, width, height, true);
+        if (scaled != reducedBitmap) {
+            reducedBitmap.recycle();
+        }
+        return scaled;
+    }
+
+    /**
+     * Average every factor x factor block of pixels of an image into one, reading the source
+     * a strip of rows at a time
+     * @param bitmap
+     * @param factor
+     * @return a new ARGB_8888 Bitmap
+     */
+    private static Bitmap boxReduce(final Bitmap bitmap, final int factor) {
+        final int srcWidth = bitmap.getWidth();
+        final int srcHeight = bitmap.getHeight();
+        final int reducedWidth = AreaDownscaler.getReducedSize(srcWidth, factor);
+        final int reducedHeight = AreaDownscaler.getReducedSize(srcHeight, factor);
+        int[] strip = new int[srcWidth * factor];
+        int[] reduced = new int[reducedWidth * reducedHeight];
+        for (int y = 0, row = 0; y < srcHeight; y += factor, row++) {
+            int rows = Math.min(factor, srcHeight - y);
+            bitmap.getPixels(strip, 0, srcWidth, 0, y, srcWidth, rows);
+            AreaDownscaler.reduceStrip(strip, 0, srcWidth, rows, factor, reduced, row * reducedWidth);
+        }
+        return Bitmap.createBitmap(reduced, reducedWidth, reducedHeight, Bitmap.Config.ARGB_8888);
+    }
+
+    /**
+     * Rotate an image by its orientation and resize it to the given max width and max height
+     * in a single transform, so the only full size bitmap is the source. 0 is treated as
+     * 'no restriction' for the max width and max height.
+     * @param bitmap
+     * @param orientation the clockwise rotation in degrees, a multiple of 90
+     * @param exif the exif information of the image, its orientation is reset if the image is rotated
+     * @param desiredMaxWidth
+     * @param desiredMaxHeight
+     * @param quality
+     * @return a new Bitmap, or the same one if nothing had to change
+     */
+    public static Bitmap orientAndResize(
+        final Bitmap bitmap,
+        final int orientation,
+        ExifWrapper exif,
+        final int desiredMaxWidth,
+        final int desiredMaxHeight,
+        final CameraProResizeQuality quality
+    ) {
+        final int degrees = ((orientation % 360) + 360) % 360;
+        final boolean quarterTurn = degrees == 90 || degrees == 270;
+        final int orientedWidth = quarterTurn ? bitmap.getHeight() : bitmap.getWidth();
+        final int orientedHeight = quarterTurn ? bitmap.getWidth() : bitmap.getHeight();
+        int[] size = getResizedDimensions(orientedWidth, orientedHeight, desiredMaxWidth, desiredMaxHeight);
+        if (degrees != 0 && exif != null) {
+            exif.resetOrientation();
+        }
+        if (degrees == 0 && size[0] == orientedWidth && size[1] == orientedHeight) {
+            return bitmap;
+        }
 
-        // resize with preserved aspect ratio
-        float newWidth = Math.min(width, maxWidth);
-        float newHeight = (height * newWidth) / width;
+        Bitmap source = bitmap;
+        boolean filter = false;
+        if (quality == CameraProResizeQuality.QUALITY) {
+            // The box pass runs before the rotation, on the target size turned back to the source orientation
+            final int factor = AreaDownscaler.getBoxFactor(
+                bitmap.getWidth(),
+                bitmap.getHeight(),
+                quarterTurn ? size[1] : size[0],
+                quarterTurn ? size[0] : size[1]
+            );
+            if (factor >= 2) {
+                source = boxReduce(bitmap, factor);
+            }
+            filter = true;
+        }
 
-        if (newHeight > maxHeight) {
-            newWidth = (width * maxHeight) / height;
-            newHeight = maxHeight;
+        Bitmap result = transform(source, degrees, size[0], size[1], filter);
+        if (source != bitmap && source != result) {
+            source.recycle();
         }
-        return Bitmap.createScaledBitmap(bitmap, Math.round(newWidth), Math.round(newHeight), false);
+        return result;
+    }
+
+    /**
+     * @see ImageGeometry#getResizedDimensions
+     */
+    public static int[] getResizedDimensions(final int width, final int height, final int desiredMaxWidth, final int desiredMaxHeight) {
+        return ImageGeometry.getResizedDimensions(width, height, desiredMaxWidth, desiredMaxHeight);
+    }
+
+    /**
+     * @see ImageGeometry#calculateInSampleSize
+     */
+    public static int calculateInSampleSize(final int srcWidth, final int srcHeight, final int reqWidth, final int reqHeight) {
+        return ImageGeometry.calculateInSampleSize(srcWidth, srcHeight, reqWidth, reqHeight);
     }
 
     /**
@@ -63,61 +180,45 @@ public class ImageUtils {
     }
 
     /**
-     * Correct the orientation of an image by reading its exif information and rotating
-     * the appropriate amount for portrait mode
+     * Rotate an image and scale it to the given size with a single matrix
      * @param bitmap
-     * @param imageUri
+     * @param degrees 0, 90, 180 or 270
+     * @param width the width after the rotation
+     * @param height the height after the rotation
+     * @param filter
+     * @return a new Bitmap, or the same one if the transform is the identity
+     */
+    private static Bitmap transform(final Bitmap bitmap, final int degrees, final int width, final int height, final boolean filter) {
+        final boolean quarterTurn = degrees == 90 || degrees == 270;
+        final int rotatedWidth = quarterTurn ? bitmap.getHeight() : bitmap.getWidth();
+        final int rotatedHeight = quarterTurn ? bitmap.getWidth() : bitmap.getHeight();
+        if (degrees == 0 && rotatedWidth == width && rotatedHeight == height) {
+            return bitmap;
+        }
+        Matrix matrix = new Matrix();
+        matrix.postRotate(degrees);
+        matrix.postScale((float) width / rotatedWidth, (float) height / rotatedHeight);
+        return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, filter);
+    }
+
+    /**
+     * Correct the orientation of an image by rotating the amount read from its exif
+     * information, for portrait mode
+     * @param bitmap
+     * @param orientation
      * @param exif
      * @return
      */
-    public static Bitmap correctOrientation(final Context c, final Bitmap bitmap, final Uri imageUri, ExifWrapper exif) throws IOException {
-        final int orientation = getOrientation(c, imageUri);
+    public static Bitmap correctOrientation(final Bitmap bitmap, final int orientation, ExifWrapper exif) {
         if (orientation != 0) {
             Matrix matrix = new Matrix();
             matrix.postRotate(orientation);
-            exif.resetOrientation();
+            if (exif != null) {
+                exif.resetOrientation();
+            }
             return transform(bitmap, matrix);
         } else {
             return bitmap;
         }
     }
-
-    private static int getOrientation(final Context c, final Uri imageUri) throws IOException {
-        int result = 0;
-
-        try (InputStream iStream = c.getContentResolver().openInputStream(imageUri)) {
-            final ExifInterface exifInterface = new ExifInterface(iStream);
-
-            final int orientation = exifInterface.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
-
-            if (orientation == ExifInterface.ORIENTATION_ROTATE_90) {
-                result = 90;
-            } else if (orientation == ExifInterface.ORIENTATION_ROTATE_180) {
-                result = 180;
-            } else if (orientation == ExifInterface.ORIENTATION_ROTATE_270) {
-                result = 270;
-            }
-        }
-
-        return result;
-    }
-
-    public static ExifWrapper getExifData(final Context c, final Bitmap bitmap, final Uri imageUri) {
-        InputStream stream = null;
-        try {
-            stream = c.getContentResolver().openInputStream(imageUri);
-            final ExifInterface exifInterface = new ExifInterface(stream);
-
-            return new ExifWrapper(exifInterface);
-        } catch (IOException ex) {
-            Logger.error("Error loading exif data from image", ex);
-        } finally {
-            if (stream != null) {
-                try {
-                    stream.close();
-                } catch (IOException ignored) {}
-            }
-        }
-        return new ExifWrapper(null);
-    }
 }
@@ -0,0 +1,71 @@
+package com.softwaredeva.plugins.camerapro;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a JPEG stream, inserting an exif APP1 segment right after its SOI marker, so the
+ * exif data is written along with the image instead of rewriting the whole file afterwards.
+ * Streams that don't start with a SOI marker are written unchanged.
+ */
+public class JpegExifOutputStream extends FilterOutputStream {
+
+    private static final int SOI_LENGTH = 2;
+
+    private final byte[] exifSegment;
+    private final byte[] header = new byte[SOI_LENGTH];
+    private int headerLength = 0;
+
+    /**
+     * @param out
+     * @param exifSegment the complete APP1 segment, marker and length included
+     */
+    public JpegExifOutputStream(OutputStream out, byte[] exifSegment) {
+        super(out);
+        this.exifSegment = exifSegment;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (headerLength < SOI_LENGTH) {
+            writeHeader(new byte[] { (byte) b }, 0, 1);
+        } else {
+            out.write(b);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (headerLength < SOI_LENGTH) {
+            int consumed = writeHeader(b, off, len);
+            off += consumed;
+            len -= consumed;
+        }
+        if (len > 0) {
+            out.write(b, off, len);
+        }
+    }
+
+    private int writeHeader(byte[] b, int off, int len) throws IOException {
+        int consumed = Math.min(len, SOI_LENGTH - headerLength);
+        System.arraycopy(b, off, header, headerLength, consumed);
+        headerLength += consumed;
+        if (headerLength == SOI_LENGTH) {
+            out.write(header, 0, SOI_LENGTH);
+            if ((header[0] & 0xFF) == 0xFF && (header[1] & 0xFF) == 0xD8 && exifSegment != null) {
+                out.write(exifSegment);
+            }
+        }
+        return consumed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (headerLength > 0 && headerLength < SOI_LENGTH) {
+            out.write(header, 0, headerLength);
+            headerLength = SOI_LENGTH;
+        }
+        super.close();
+    }
+}
@@ -0,0 +1,240 @@
+package com.softwaredeva.plugins.camerapro;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.media.MediaMetadataRetriever;
+import android.net.Uri;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.StructStat;
+import com.getcapacitor.Logger;
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * Frames of a video read with {@link MediaMetadataRetriever}: a poster frame and key frames
+ * spread over the whole video. Where the platform supports it the decoder scales the frames
+ * itself, instead of handing out a full resolution frame to scale down afterwards.
+ */
+public class VideoThumbnailer implements Closeable {
+
+    private final Uri uri;
+    private final MediaMetadataRetriever retriever;
+    private final ParcelFileDescriptor descriptor;
+
+    private boolean metadataRead = false;
+    private long duration = 0;
+    private int width = 0;
+    private int height = 0;
+
+    private VideoThumbnailer(Uri uri, MediaMetadataRetriever retriever, ParcelFileDescriptor descriptor) {
+        this.uri = uri;
+        this.retriever = retriever;
+        this.descriptor = descriptor;
+    }
+
+    /**
+     * Open the video behind the given uri, through a file descriptor where possible
+     * @param c
+     * @param uri
+     * @return
+     * @throws IOException if the uri can't be opened or isn't a video
+     */
+    public static VideoThumbnailer open(final Context c, final Uri uri) throws IOException {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        ParcelFileDescriptor descriptor = c.getContentResolver().openFileDescriptor(uri, "r");
+        if (descriptor == null) {
+            release(retriever);
+            throw new FileNotFoundException("Unable to open " + uri);
+        }
+        try {
+            retriever.setDataSource(descriptor.getFileDescriptor());
+            return new VideoThumbnailer(uri, retriever, descriptor);
+        } catch (RuntimeException ex) {
+            // Descriptors that can't seek are refused, let the retriever open the uri itself
+            descriptor.close();
+        }
+        try {
+            retriever.setDataSource(c, uri);
+            return new VideoThumbnailer(uri, retriever, null);
+        } catch (RuntimeException ex) {
+            release(retriever);
+            IOException invalid = new IOException("Unable to read video " + uri);
+            invalid.initCause(ex);
+            throw invalid;
+        }
+    }
+
+    /**
+     * Spread key frames evenly over a video, each one in the middle of its part, so the
+     * first and last frames, often black, are avoided
+     * @param duration the duration of the video in milliseconds
+     * @param count
+     * @return the times of the key frames in milliseconds
+     */
+    public static long[] getKeyframeTimes(long duration, int count) {
+        if (duration <= 0 || count <= 0) {
+            return new long[0];
+        }
+        long[] times = new long[count];
+        for (int i = 0; i < count; i++) {
+            times[i] = (long) (duration * (i + 0.5) / count);
+        }
+        return times;
+    }
+
+    public Uri getUri() {
+        return uri;
+    }
+
+    /**
+     * @return the duration in milliseconds, 0 if unknown
+     */
+    public long getDuration() {
+        readMetadata();
+        return duration;
+    }
+
+    /**
+     * @return the width of the frames once rotated, 0 if unknown
+     */
+    public int getWidth() {
+        readMetadata();
+        return width;
+    }
+
+    /**
+     * @return the height of the frames once rotated, 0 if unknown
+     */
+    public int getHeight() {
+        readMetadata();
+        return height;
+    }
+
+    /**
+     * Get a fingerprint of the video content from its size and modification time,
+     * so a changed video behind the same uri isn't mistaken for the previous one
+     * @return the fingerprint, or null if the video wasn't opened through a descriptor
+     */
+    public String getFingerprint() {
+        if (descriptor == null) {
+            return null;
+        }
+        try {
+            StructStat stat = Os.fstat(descriptor.getFileDescriptor());
+            return stat.st_size + ":" + stat.st_mtime;
+        } catch (ErrnoException ex) {
+            Logger.error("Unable to stat video " + uri, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Estimate the bytes of pixels decoded to get a frame of the given max size
+     * @param maxWidth
+     * @param maxHeight
+     * @return
+     */
+    public long getFrameBytes(int maxWidth, int maxHeight) {
+        int[] size = getFrameDimensions(maxWidth, maxHeight);
+        long bytes = (long) size[0] * size[1] * 4;
+        if (!isScaledByDecoder(size)) {
+            // The full frame is decoded, then scaled
+            bytes += (long) getWidth() * getHeight() * 4;
+        }
+        return bytes;
+    }
+
+    /**
+     * Get the sync frame closest to the given time, scaled to fit the given max width and
+     * max height. 0 is treated as 'no restriction'.
+     * @param time the time in milliseconds, negative for a representative poster frame
+     * @param maxWidth
+     * @param maxHeight
+     * @return the frame, or null if the video has none at that time
+     */
+    public Bitmap getFrame(long time, int maxWidth, int maxHeight) {
+        long timeUs = time < 0 ? -1 : time * 1000;
+        int[] size = getFrameDimensions(maxWidth, maxHeight);
+        Bitmap frame;
+        if (isScaledByDecoder(size)) {
+            // The bounds are a box the frame is fitted in, make it square so it fits
+            // whether the rotation is applied before or after scaling
+            int side = Math.max(size[0], size[1]);
+            frame = retriever.getScaledFrameAtTime(timeUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC, side, side);
+        } else {
+            frame = retriever.getFrameAtTime(timeUs, MediaMetadataRetriever.OPTION_CLOSEST_SYNC);
+        }
+        if (frame == null || (maxWidth <= 0 && maxHeight <= 0)) {
+            return frame;
+        }
+        if (frame.getWidth() > size[0] || frame.getHeight() > size[1]) {
+            Bitmap scaled = ImageUtils.resize(frame, maxWidth, maxHeight);
+            if (scaled != frame) {
+                frame.recycle();
+            }
+            frame = scaled;
+        }
+        return frame;
+    }
+
+    private int[] getFrameDimensions(int maxWidth, int maxHeight) {
+        if (getWidth() <= 0 || getHeight() <= 0) {
+            return new int[] { 0, 0 };
+        }
+        return ImageUtils.getResizedDimensions(getWidth(), getHeight(), maxWidth, maxHeight);
+    }
+
+    private boolean isScaledByDecoder(int[] size) {
+        return (
+            Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1 &&
+            size[0] > 0 &&
+            size[1] > 0 &&
+            (size[0] < getWidth() || size[1] < getHeight())
+        );
+    }
+
+    private void readMetadata() {
+        if (metadataRead) {
+            return;
+        }
+        metadataRead = true;
+        duration = parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION));
+        int videoWidth = (int) parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_WIDTH));
+        int videoHeight = (int) parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_HEIGHT));
+        long rotation = parseLong(retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION));
+        boolean swap = rotation % 180 != 0;
+        width = swap ? videoHeight : videoWidth;
+        height = swap ? videoWidth : videoHeight;
+    }
+
+    private static long parseLong(String value) {
+        if (value == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+
+    private static void release(MediaMetadataRetriever retriever) {
+        try {
+            retriever.release();
+        } catch (IOException | RuntimeException ex) {
+            Logger.error("Unable to release the video retriever", ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        release(retriever);
+        if (descriptor != null) {
+            descriptor.close();
+        }
+    }
+}
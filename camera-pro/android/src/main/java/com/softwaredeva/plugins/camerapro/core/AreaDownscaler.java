@@ -0,0 +1,106 @@
+package com.softwaredeva.plugins.camerapro.core;
+
+/**
+ * The first pass of a two pass downscale: an integer box reduction averaging every block of
+ * source pixels into one, before a filtered scale to the exact size. The box pass reads every
+ * source pixel, so unlike a single filtered scale it doesn't alias at large reduction ratios,
+ * and its output is small enough for the final pass to be cheap.
+ *
+ * The box pass works on strips of rows, so callers can feed it a large image a few rows at
+ * a time instead of copying all of its pixels at once.
+ */
+public final class AreaDownscaler {
+
+    private AreaDownscaler() {}
+
+    /**
+     * Get the box factor to reduce an image by before the final scale to the target size,
+     * the largest that keeps at least the target size in both dimensions
+     * @param srcWidth
+     * @param srcHeight
+     * @param dstWidth
+     * @param dstHeight
+     * @return the factor, 1 if no box reduction is possible
+     */
+    public static int getBoxFactor(int srcWidth, int srcHeight, int dstWidth, int dstHeight) {
+        if (dstWidth <= 0 || dstHeight <= 0) {
+            return 1;
+        }
+        return Math.max(1, Math.min(srcWidth / dstWidth, srcHeight / dstHeight));
+    }
+
+    /**
+     * The size of one side of an image after a box reduction, a partial block at the end
+     * counts as a pixel
+     * @param size
+     * @param factor
+     * @return
+     */
+    public static int getReducedSize(int size, int factor) {
+        return (size + factor - 1) / factor;
+    }
+
+    /**
+     * Average every factor x factor block of the image into one pixel
+     * @param src
+     * @param factor
+     * @return
+     */
+    public static PixelBuffer boxReduce(PixelBuffer src, int factor) {
+        int width = src.getWidth();
+        int height = src.getHeight();
+        int reducedWidth = getReducedSize(width, factor);
+        PixelBuffer dst = new PixelBuffer(reducedWidth, getReducedSize(height, factor));
+        int[] in = src.getPixels();
+        int[] out = dst.getPixels();
+        for (int y = 0, row = 0; y < height; y += factor, row++) {
+            reduceStrip(in, y * width, width, Math.min(factor, height - y), factor, out, row * reducedWidth);
+        }
+        return dst;
+    }
+
+    /**
+     * Average a strip of rows into one row of the reduced image
+     * @param strip the pixels of the rows
+     * @param offset the index of the first pixel of the strip
+     * @param width the width of the rows
+     * @param rows the number of rows in the strip, the factor except for the last strip
+     * @param factor
+     * @param out the reduced pixels, {@link #getReducedSize} wide
+     * @param outOffset the index of the reduced row
+     */
+    public static void reduceStrip(int[] strip, int offset, int width, int rows, int factor, int[] out, int outOffset) {
+        int fullBlocks = width / factor;
+        int fullCount = factor * rows;
+        // Round to nearest, both for the full blocks and the partial one
+        int fullHalf = fullCount >> 1;
+        for (int block = 0; block < fullBlocks; block++) {
+            int start = offset + block * factor;
+            out[outOffset + block] = average(strip, start, factor, rows, width, fullCount, fullHalf);
+        }
+        int remaining = width - fullBlocks * factor;
+        if (remaining > 0) {
+            int count = remaining * rows;
+            out[outOffset + fullBlocks] = average(strip, offset + fullBlocks * factor, remaining, rows, width, count, count >> 1);
+        }
+    }
+
+    private static int average(int[] pixels, int start, int columns, int rows, int stride, int count, int half) {
+        int a = 0;
+        int r = 0;
+        int g = 0;
+        int b = 0;
+        for (int row = 0; row < rows; row++) {
+            int index = start + row * stride;
+            int end = index + columns;
+            for (; index < end; index++) {
+                int pixel = pixels[index];
+                a += pixel >>> 24;
+                r += (pixel >> 16) & 0xff;
+                g += (pixel >> 8) & 0xff;
+                b += pixel & 0xff;
+            }
+        }
+        return ((a + half) / count) << 24 | ((r + half) / count) << 16 | ((g + half) / count) << 8 | ((b + half) / count);
+    }
+}
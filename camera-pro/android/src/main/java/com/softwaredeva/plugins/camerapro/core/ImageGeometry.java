@@ -0,0 +1,108 @@
+package com.softwaredeva.plugins.camerapro.core;
+
+/**
+ * Size computations for decoding and resizing images, shared by the Android code
+ * and the benchmarks
+ */
+public final class ImageGeometry {
+
+    private ImageGeometry() {}
+
+    /**
+     * Get the dimensions of an image after a resize to the given bounds, preserving its aspect ratio
+     * @param width
+     * @param height
+     * @param desiredMaxWidth
+     * @param desiredMaxHeight
+     * @return the width and height
+     */
+    public static int[] getResizedDimensions(final int width, final int height, final int desiredMaxWidth, final int desiredMaxHeight) {
+        // 0 is treated as 'no restriction'
+        int maxHeight = desiredMaxHeight == 0 ? height : desiredMaxHeight;
+        int maxWidth = desiredMaxWidth == 0 ? width : desiredMaxWidth;
+
+        // resize with preserved aspect ratio
+        float newWidth = Math.min(width, maxWidth);
+        float newHeight = (height * newWidth) / width;
+
+        if (newHeight > maxHeight) {
+            newWidth = (width * maxHeight) / height;
+            newHeight = maxHeight;
+        }
+        return new int[] { Math.round(newWidth), Math.round(newHeight) };
+    }
+
+    /**
+     * Calculate the largest power-of-two sample size that still leaves enough pixels for the
+     * final, exact resize to the requested max width and max height. 0 is treated as
+     * 'no restriction' and the orientation is not known yet, so the scale that fits the
+     * bounds in either orientation is used.
+     * @param srcWidth
+     * @param srcHeight
+     * @param reqWidth
+     * @param reqHeight
+     * @return the sample size to decode with, 1 if no subsampling is possible
+     */
+    public static int calculateInSampleSize(final int srcWidth, final int srcHeight, final int reqWidth, final int reqHeight) {
+        if (srcWidth <= 0 || srcHeight <= 0 || (reqWidth <= 0 && reqHeight <= 0)) {
+            return 1;
+        }
+        double scale = Math.max(
+            fitScale(srcWidth, srcHeight, reqWidth, reqHeight),
+            fitScale(srcHeight, srcWidth, reqWidth, reqHeight)
+        );
+
+        // decoders round subsampled dimensions down, so compare against whole target pixels
+        final int targetWidth = (int) Math.ceil(srcWidth * scale);
+        final int targetHeight = (int) Math.ceil(srcHeight * scale);
+
+        int inSampleSize = 1;
+        while (srcWidth / (inSampleSize * 2) >= targetWidth && srcHeight / (inSampleSize * 2) >= targetHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+
+    /**
+     * Raise a sample size until the decoded pixels fit in the given number of bytes. Decoders
+     * round subsampled dimensions down, so rounding up here errs on the safe side.
+     * @param srcWidth
+     * @param srcHeight
+     * @param inSampleSize the sample size needed for the requested dimensions
+     * @param bytesPerPixel
+     * @param maxBytes
+     * @return the sample size, at least inSampleSize
+     */
+    public static int fitSampleSize(final int srcWidth, final int srcHeight, final int inSampleSize, final int bytesPerPixel, final long maxBytes) {
+        int sampleSize = Math.max(1, inSampleSize);
+        while (getSampledBytes(srcWidth, srcHeight, sampleSize, bytesPerPixel) > maxBytes && sampleSize < Math.max(srcWidth, srcHeight)) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Get the size of the pixels of an image decoded with the given sample size
+     * @param srcWidth
+     * @param srcHeight
+     * @param inSampleSize
+     * @param bytesPerPixel
+     * @return
+     */
+    public static long getSampledBytes(final int srcWidth, final int srcHeight, final int inSampleSize, final int bytesPerPixel) {
+        long width = (srcWidth + inSampleSize - 1) / inSampleSize;
+        long height = (srcHeight + inSampleSize - 1) / inSampleSize;
+        return width * height * bytesPerPixel;
+    }
+
+    private static double fitScale(final int width, final int height, final int maxWidth, final int maxHeight) {
+        double scale = 1;
+        if (maxWidth > 0) {
+            scale = Math.min(scale, (double) maxWidth / width);
+        }
+        if (maxHeight > 0) {
+            scale = Math.min(scale, (double) maxHeight / height);
+        }
+        return scale;
+    }
+}
@@ -0,0 +1,352 @@
+package com.softwaredeva.plugins.camerapro.core;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The duration, size, rotation and codec of a video, read from the headers of an ISO base
+ * media file: mp4, mov and 3gp. Only the box headers on the way to the movie and track
+ * headers are read, with positioned reads that jump over everything else, so the media data
+ * is never touched and the time taken doesn't depend on the size of the file.
+ */
+public final class Mp4Metadata {
+
+    private static final int HEADER_SIZE = 8;
+    private static final int LARGE_SIZE_SIZE = 8;
+
+    // The header boxes read whole are all much smaller than this, anything larger is corrupt
+    private static final int MAX_HEADER_BOX_SIZE = 1024;
+
+    // version and flags, the reserved and predefined fields of a visual sample entry,
+    // then its width and height
+    private static final int STSD_VISUAL_ENTRY_SIZE = 8 + HEADER_SIZE + 24 + 4;
+
+    private static final String HANDLER_VIDEO = "vide";
+
+    private long duration = 0;
+    private long bitrate = 0;
+    private int width = 0;
+    private int height = 0;
+    private int rotation = 0;
+    private String codec;
+
+    private Mp4Metadata() {}
+
+    /**
+     * Read the metadata of the video in the file
+     * @param channel the file, read with positioned reads only so its position is left as is
+     * @return
+     * @throws IOException if the file can't be read or isn't an ISO base media file
+     */
+    public static Mp4Metadata read(FileChannel channel) throws IOException {
+        try {
+            return parse(channel);
+        } catch (BufferUnderflowException | IllegalArgumentException ex) {
+            // A header box too short for its fields
+            IOException truncated = new IOException("Truncated header box");
+            truncated.initCause(ex);
+            throw truncated;
+        }
+    }
+
+    private static Mp4Metadata parse(FileChannel channel) throws IOException {
+        long fileSize = channel.size();
+        Box moov = findChild(channel, 0, fileSize, "moov");
+        if (moov == null) {
+            throw new IOException("No moov box found");
+        }
+
+        Mp4Metadata metadata = new Mp4Metadata();
+        long timescale = 0;
+        long movieDuration = 0;
+        long fragmentDuration = 0;
+        boolean videoFound = false;
+        for (Box box : children(channel, moov.payload, moov.end)) {
+            switch (box.type) {
+                case "mvhd":
+                    {
+                        ByteBuffer mvhd = readPayload(channel, box);
+                        boolean large = mvhd.get() == 1;
+                        skip(mvhd, 3 + (large ? 16 : 8));
+                        timescale = readUnsignedInt(mvhd);
+                        movieDuration = large ? mvhd.getLong() : readUnsignedInt(mvhd);
+                        break;
+                    }
+                case "mvex":
+                    {
+                        // Fragmented files may only know their duration here
+                        Box mehd = findChild(channel, box.payload, box.end, "mehd");
+                        if (mehd != null) {
+                            ByteBuffer payload = readPayload(channel, mehd);
+                            boolean large = payload.get() == 1;
+                            skip(payload, 3);
+                            fragmentDuration = large ? payload.getLong() : readUnsignedInt(payload);
+                        }
+                        break;
+                    }
+                case "trak":
+                    if (!videoFound) {
+                        videoFound = metadata.readTrack(channel, box);
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (!videoFound) {
+            throw new IOException("No video track found");
+        }
+
+        long units = movieDuration > 0 ? movieDuration : fragmentDuration;
+        if (timescale > 0 && units > 0) {
+            metadata.duration = (long) (units * 1000.0 / timescale);
+            metadata.bitrate = (long) (fileSize * 8 * 1000.0 / metadata.duration);
+        }
+        return metadata;
+    }
+
+    /**
+     * Read the track header and sample description of a track, if it is a video track
+     * @return whether the track is a video track
+     */
+    private boolean readTrack(FileChannel channel, Box trak) throws IOException {
+        Box tkhd = null;
+        Box mdia = null;
+        for (Box box : children(channel, trak.payload, trak.end)) {
+            if ("tkhd".equals(box.type)) {
+                tkhd = box;
+            } else if ("mdia".equals(box.type)) {
+                mdia = box;
+            }
+        }
+        if (tkhd == null || mdia == null) {
+            return false;
+        }
+        Box hdlr = findChild(channel, mdia.payload, mdia.end, "hdlr");
+        if (hdlr == null) {
+            return false;
+        }
+        ByteBuffer handler = readPayload(channel, hdlr);
+        skip(handler, 8);
+        if (!HANDLER_VIDEO.equals(readType(handler))) {
+            return false;
+        }
+
+        ByteBuffer header = readPayload(channel, tkhd);
+        boolean large = header.get() == 1;
+        // flags, creation and modification times, track id, reserved, duration,
+        // then reserved, layer, alternate group, volume and reserved again
+        skip(header, 3 + (large ? 32 : 20) + 16);
+        int[] matrix = new int[9];
+        for (int i = 0; i < matrix.length; i++) {
+            matrix[i] = header.getInt();
+        }
+        rotation = getRotation(matrix[0], matrix[1]);
+        // 16.16 fixed point
+        width = header.getInt() >>> 16;
+        height = header.getInt() >>> 16;
+
+        Box minf = findChild(channel, mdia.payload, mdia.end, "minf");
+        Box stbl = minf != null ? findChild(channel, minf.payload, minf.end, "stbl") : null;
+        Box stsd = stbl != null ? findChild(channel, stbl.payload, stbl.end, "stsd") : null;
+        if (stsd != null) {
+            readSampleDescription(channel, stsd);
+        }
+        return true;
+    }
+
+    /**
+     * Read the codec from the first sample entry, and the size from it if the track header
+     * has none
+     */
+    private void readSampleDescription(FileChannel channel, Box stsd) throws IOException {
+        long available = stsd.end - stsd.payload;
+        if (available < 8 + HEADER_SIZE) {
+            return;
+        }
+        ByteBuffer description = read(channel, stsd.payload, (int) Math.min(available, STSD_VISUAL_ENTRY_SIZE));
+        skip(description, 4);
+        if (description.getInt() == 0) {
+            return;
+        }
+        skip(description, 4);
+        codec = readType(description).trim();
+        if ((width == 0 || height == 0) && description.remaining() >= 28) {
+            skip(description, 24);
+            width = description.getShort() & 0xffff;
+            height = description.getShort() & 0xffff;
+        }
+    }
+
+    /**
+     * Get the rotation of the display matrix, as a multiple of 90 degrees clockwise
+     * @param a the cosine of the rotation, 16.16 fixed point
+     * @param b the sine of the rotation, 16.16 fixed point
+     * @return
+     */
+    static int getRotation(int a, int b) {
+        double degrees = Math.toDegrees(Math.atan2(b, a));
+        int quarters = (int) Math.round(degrees / 90);
+        return ((quarters * 90) % 360 + 360) % 360;
+    }
+
+    /**
+     * @return the duration in milliseconds, 0 if unknown
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    /**
+     * The average bitrate of the whole file, all its tracks included
+     * @return the bitrate in bits per second, 0 if unknown
+     */
+    public long getBitrate() {
+        return bitrate;
+    }
+
+    /**
+     * @return the width of the frames as stored, before rotation
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height of the frames as stored, before rotation
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return the clockwise rotation to display the frames with: 0, 90, 180 or 270
+     */
+    public int getRotation() {
+        return rotation;
+    }
+
+    /**
+     * @return the width of the frames once rotated
+     */
+    public int getDisplayWidth() {
+        return rotation % 180 == 0 ? width : height;
+    }
+
+    /**
+     * @return the height of the frames once rotated
+     */
+    public int getDisplayHeight() {
+        return rotation % 180 == 0 ? height : width;
+    }
+
+    /**
+     * @return the four character code of the video codec, ex: avc1, hvc1, or null if unknown
+     */
+    public String getCodec() {
+        return codec;
+    }
+
+    /**
+     * A box: its type, and the range of its payload in the file
+     */
+    private static final class Box {
+
+        final String type;
+        final long payload;
+        final long end;
+
+        Box(String type, long payload, long end) {
+            this.type = type;
+            this.payload = payload;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Read the header of the box at the given position
+     * @param end the end of the parent box
+     * @return the box, or null if there is no room left for one
+     * @throws IOException if the box doesn't fit in its parent
+     */
+    private static Box readBox(FileChannel channel, long position, long end) throws IOException {
+        if (end - position < HEADER_SIZE) {
+            return null;
+        }
+        ByteBuffer header = read(channel, position, HEADER_SIZE);
+        long size = readUnsignedInt(header);
+        String type = readType(header);
+        long payload = position + HEADER_SIZE;
+        if (size == 1) {
+            size = read(channel, payload, LARGE_SIZE_SIZE).getLong();
+            payload += LARGE_SIZE_SIZE;
+        } else if (size == 0) {
+            // The box runs to the end of its parent
+            size = end - position;
+        }
+        if (size < payload - position || size > end - position) {
+            throw new IOException("Invalid " + type + " box of " + size + " bytes at " + position);
+        }
+        return new Box(type, payload, position + size);
+    }
+
+    private static List<Box> children(FileChannel channel, long start, long end) throws IOException {
+        List<Box> boxes = new ArrayList<>();
+        Box box = readBox(channel, start, end);
+        while (box != null) {
+            boxes.add(box);
+            box = readBox(channel, box.end, end);
+        }
+        return boxes;
+    }
+
+    private static Box findChild(FileChannel channel, long start, long end, String type) throws IOException {
+        Box box = readBox(channel, start, end);
+        while (box != null && !type.equals(box.type)) {
+            box = readBox(channel, box.end, end);
+        }
+        return box;
+    }
+
+    /**
+     * Read the whole payload of a header box
+     */
+    private static ByteBuffer readPayload(FileChannel channel, Box box) throws IOException {
+        long size = box.end - box.payload;
+        if (size > MAX_HEADER_BOX_SIZE) {
+            throw new IOException("Invalid " + box.type + " box of " + size + " bytes");
+        }
+        return read(channel, box.payload, (int) size);
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of file at " + (position + buffer.position()));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static long readUnsignedInt(ByteBuffer buffer) {
+        return buffer.getInt() & 0xffffffffL;
+    }
+
+    private static String readType(ByteBuffer buffer) {
+        byte[] type = new byte[4];
+        buffer.get(type);
+        return new String(type, StandardCharsets.ISO_8859_1);
+    }
+
+    private static void skip(ByteBuffer buffer, int bytes) {
+        buffer.position(buffer.position() + bytes);
+    }
+}
@@ -0,0 +1,72 @@
+package com.softwaredeva.plugins.camerapro.core;
+
+/**
+ * An image held as packed ARGB_8888 ints, row by row with no padding. This is the layout of
+ * Bitmap#getPixels, so the box reduction runs on the same pixels on a device and in the
+ * benchmarks, and nothing here depends on Android.
+ */
+public final class PixelBuffer {
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+
+    /**
+     * Create a transparent buffer
+     * @param width
+     * @param height
+     */
+    public PixelBuffer(int width, int height) {
+        this(width, height, new int[checkedSize(width, height)]);
+    }
+
+    /**
+     * Wrap existing pixels, without copying them
+     * @param width
+     * @param height
+     * @param pixels at least width * height ARGB pixels
+     */
+    public PixelBuffer(int width, int height, int[] pixels) {
+        int size = checkedSize(width, height);
+        if (pixels.length < size) {
+            throw new IllegalArgumentException("Expected " + size + " pixels, got " + pixels.length);
+        }
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * The backing pixels, changes to them are visible in the buffer
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    public int getPixel(int x, int y) {
+        return pixels[y * width + x];
+    }
+
+    public void setPixel(int x, int y, int argb) {
+        pixels[y * width + x] = argb;
+    }
+
+    private static int checkedSize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid size " + width + "x" + height);
+        }
+        long size = (long) width * height;
+        if (size > Integer.MAX_VALUE / 4) {
+            throw new IllegalArgumentException("Image too large: " + width + "x" + height);
+        }
+        return (int) size;
+    }
+}
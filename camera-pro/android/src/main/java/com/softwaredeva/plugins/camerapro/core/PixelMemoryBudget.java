@@ -0,0 +1,171 @@
+package com.softwaredeva.plugins.camerapro.core;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+
+/**
+ * Admission control for decoded pixels. Every decode reserves the bytes its pixels will take
+ * before it runs, and waits while the reservations of the other decodes leave too little of
+ * the shared capacity. Waiting decodes are admitted in the order they asked, so a large image
+ * isn't starved by smaller ones. A reservation larger than the whole capacity is admitted
+ * once it is the only one, instead of waiting forever.
+ */
+public final class PixelMemoryBudget {
+
+    private final long capacity;
+    private final ArrayDeque<Object> waiting = new ArrayDeque<>();
+
+    private long reserved = 0;
+    private long peakReserved = 0;
+    private long reservations = 0;
+    private long waits = 0;
+    private long totalWaitNanos = 0;
+    private long maxWaitNanos = 0;
+
+    /**
+     * @param capacity the bytes of pixels that can be reserved at the same time
+     */
+    public PixelMemoryBudget(long capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Create an empty reservation, sized with {@link Reservation#resize}
+     * @return
+     */
+    public Reservation newReservation() {
+        return new Reservation();
+    }
+
+    /**
+     * Reserve bytes, waiting until they fit
+     * @param bytes
+     * @param held the bytes the caller already holds, which it can't wait for
+     * @return the nanoseconds spent waiting
+     * @throws InterruptedException
+     */
+    private synchronized long acquire(long bytes, long held) throws InterruptedException {
+        long start = System.nanoTime();
+        boolean waited = false;
+        Object turn = new Object();
+        waiting.addLast(turn);
+        try {
+            while (waiting.peekFirst() != turn || (reserved + bytes > capacity && reserved > held)) {
+                waited = true;
+                wait();
+            }
+        } catch (InterruptedException ex) {
+            waiting.remove(turn);
+            notifyAll();
+            throw ex;
+        }
+        waiting.removeFirst();
+        reserved += bytes;
+        peakReserved = Math.max(peakReserved, reserved);
+        reservations++;
+        long waitNanos = 0;
+        if (waited) {
+            waitNanos = System.nanoTime() - start;
+            waits++;
+            totalWaitNanos += waitNanos;
+            maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+        }
+        // The next in line may fit as well
+        notifyAll();
+        return waitNanos;
+    }
+
+    private synchronized void release(long bytes) {
+        reserved -= bytes;
+        notifyAll();
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getReserved() {
+        return reserved;
+    }
+
+    /**
+     * The most bytes reserved at the same time since the statistics were reset
+     */
+    public synchronized long getPeakReserved() {
+        return peakReserved;
+    }
+
+    public synchronized long getReservations() {
+        return reservations;
+    }
+
+    /**
+     * The number of reservations that had to wait
+     */
+    public synchronized long getWaits() {
+        return waits;
+    }
+
+    public synchronized long getTotalWaitNanos() {
+        return totalWaitNanos;
+    }
+
+    public synchronized long getMaxWaitNanos() {
+        return maxWaitNanos;
+    }
+
+    /**
+     * Reset the statistics, the peak starts again from the bytes currently reserved
+     */
+    public synchronized void resetStats() {
+        peakReserved = reserved;
+        reservations = 0;
+        waits = 0;
+        totalWaitNanos = 0;
+        maxWaitNanos = 0;
+    }
+
+    /**
+     * Bytes reserved by one decode, released when closed. Not thread safe, a reservation
+     * belongs to the thread processing its image.
+     */
+    public final class Reservation implements Closeable {
+
+        private long bytes = 0;
+
+        private Reservation() {}
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Change the reserved bytes. Growing waits until the budget has room, shrinking
+         * releases the difference right away.
+         * @param newBytes
+         * @return the nanoseconds spent waiting
+         * @throws InterruptedException
+         */
+        public long resize(long newBytes) throws InterruptedException {
+            long waitNanos = 0;
+            if (newBytes > bytes) {
+                waitNanos = acquire(newBytes - bytes, bytes);
+            } else if (newBytes < bytes) {
+                release(bytes - newBytes);
+            }
+            bytes = newBytes;
+            return waitNanos;
+        }
+
+        @Override
+        public void close() {
+            if (bytes > 0) {
+                release(bytes);
+                bytes = 0;
+            }
+        }
+    }
+}
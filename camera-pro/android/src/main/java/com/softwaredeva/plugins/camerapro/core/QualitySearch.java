@@ -0,0 +1,81 @@
+package com.softwaredeva.plugins.camerapro.core;
+
+/**
+ * A bounded binary search for the highest encoding quality that fits in a byte budget. The
+ * caller encodes at every quality {@link #next()} hands out and reports whether it fit. When
+ * none of the qualities tried fits, the lowest quality is tried last, so a search without a
+ * best quality means the image doesn't fit at any quality. Not thread safe.
+ */
+public final class QualitySearch {
+
+    private final int minQuality;
+    private final int maxQuality;
+    private final int maxSteps;
+    private int low;
+    private int high;
+    private int steps = 0;
+    private int best = -1;
+    private int pending = -1;
+    private boolean minQualityTried = false;
+
+    /**
+     * @param minQuality the lowest quality to try
+     * @param maxQuality the highest quality to try
+     * @param maxSteps the number of binary search steps, the lowest quality may take one more
+     */
+    public QualitySearch(int minQuality, int maxQuality, int maxSteps) {
+        this.minQuality = minQuality;
+        this.maxQuality = maxQuality;
+        this.maxSteps = maxSteps;
+        this.low = minQuality;
+        this.high = maxQuality;
+    }
+
+    /**
+     * @return the next quality to encode at, -1 once the search is over
+     * @throws IllegalStateException if the previous quality wasn't reported
+     */
+    public int next() {
+        if (pending >= 0) {
+            throw new IllegalStateException("Quality " + pending + " wasn't reported");
+        }
+        if (low <= high && steps < maxSteps) {
+            steps++;
+            pending = (low + high) >>> 1;
+        } else if (best < 0 && !minQualityTried && minQuality <= maxQuality) {
+            // Nothing fit and the search stopped above the lowest quality
+            pending = minQuality;
+        } else {
+            return -1;
+        }
+        return pending;
+    }
+
+    /**
+     * Report whether the image encoded at the last quality handed out fits in the budget
+     * @param fits
+     * @throws IllegalStateException if no quality is waiting to be reported
+     */
+    public void report(boolean fits) {
+        if (pending < 0) {
+            throw new IllegalStateException("No quality to report");
+        }
+        if (pending == minQuality) {
+            minQualityTried = true;
+        }
+        if (fits) {
+            best = pending;
+            low = pending + 1;
+        } else {
+            high = pending - 1;
+        }
+        pending = -1;
+    }
+
+    /**
+     * @return the highest quality reported to fit, -1 if none did
+     */
+    public int getBest() {
+        return best;
+    }
+}
@@ -0,0 +1,67 @@
+package com.softwaredeva.plugins.camerapro.core;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent values of a measurement to compute percentiles over them, along
+ * with the count, total and maximum of every value ever added. Memory stays bounded no
+ * matter how many values are added. Not thread safe.
+ */
+public final class SampleWindow {
+
+    private final long[] samples;
+    private int next = 0;
+    private long count = 0;
+    private long total = 0;
+    private long max = 0;
+
+    /**
+     * @param capacity the number of recent values percentiles are computed over
+     */
+    public SampleWindow(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        samples = new long[capacity];
+    }
+
+    public void add(long value) {
+        samples[next] = value;
+        next = (next + 1) % samples.length;
+        count++;
+        total += value;
+        max = count == 1 ? value : Math.max(max, value);
+    }
+
+    /**
+     * The number of values added, including the ones no longer in the window
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * Get the value below which the given percentage of the recent values fall, using the
+     * nearest rank
+     * @param percentile from 0 to 100
+     * @return the value, 0 if none was added
+     */
+    public long getPercentile(double percentile) {
+        int size = (int) Math.min(count, samples.length);
+        if (size == 0) {
+            return 0;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * size);
+        return sorted[Math.max(0, Math.min(size - 1, rank - 1))];
+    }
+}
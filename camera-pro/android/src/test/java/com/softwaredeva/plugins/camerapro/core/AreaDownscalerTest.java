@@ -0,0 +1,131 @@
+package com.softwaredeva.plugins.camerapro.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Box factors and reduced sizes for exact and uneven ratios, and strips averaged with a
+ * partial last column, a partial last row, or both.
+ */
+public class AreaDownscalerTest {
+
+    @Test
+    public void boxFactorKeepsTargetSize() {
+        assertEquals(4, AreaDownscaler.getBoxFactor(4000, 3000, 1000, 750));
+        // The smaller ratio wins, so neither side ends up below the target
+        assertEquals(2, AreaDownscaler.getBoxFactor(4000, 3000, 1500, 1000));
+        assertEquals(3, AreaDownscaler.getBoxFactor(1000, 1000, 300, 300));
+    }
+
+    @Test
+    public void boxFactorIsOneWithoutReduction() {
+        assertEquals(1, AreaDownscaler.getBoxFactor(800, 600, 1000, 750));
+        assertEquals(1, AreaDownscaler.getBoxFactor(1000, 1000, 600, 600));
+        assertEquals(1, AreaDownscaler.getBoxFactor(1000, 1000, 0, 500));
+        assertEquals(1, AreaDownscaler.getBoxFactor(1000, 1000, 500, -1));
+    }
+
+    @Test
+    public void reducedSizeCountsPartialBlock() {
+        assertEquals(3, AreaDownscaler.getReducedSize(9, 3));
+        assertEquals(4, AreaDownscaler.getReducedSize(10, 3));
+        assertEquals(1, AreaDownscaler.getReducedSize(1, 4));
+        assertEquals(7, AreaDownscaler.getReducedSize(7, 1));
+    }
+
+    @Test
+    public void reducesStripWithPartialLastColumn() {
+        int[] strip = {
+            gray(10), gray(20), gray(30), gray(40), gray(50),
+            gray(30), gray(40), gray(50), gray(60), gray(71),
+        };
+        int[] out = new int[3];
+        AreaDownscaler.reduceStrip(strip, 0, 5, 2, 2, out, 0);
+
+        assertEquals(gray(25), out[0]);
+        assertEquals(gray(45), out[1]);
+        // The partial block averages its own 2 pixels, 60.5 rounded to nearest
+        assertEquals(gray(61), out[2]);
+    }
+
+    @Test
+    public void reducesPartialLastRow() {
+        int[] strip = {
+            gray(0), gray(0), gray(0), gray(0),
+            gray(10), gray(21), gray(40), gray(50),
+        };
+        int[] out = new int[4];
+        // Only the second row is left, at an offset, written after one reduced row
+        AreaDownscaler.reduceStrip(strip, 4, 4, 1, 2, out, 2);
+
+        assertEquals(0, out[0]);
+        assertEquals(0, out[1]);
+        assertEquals(gray(16), out[2]);
+        assertEquals(gray(45), out[3]);
+    }
+
+    @Test
+    public void reducesPartialCorner() {
+        int[] strip = { gray(10), gray(20), gray(99) };
+        int[] out = new int[2];
+        AreaDownscaler.reduceStrip(strip, 0, 3, 1, 4, out, 0);
+
+        // A factor wider than the row leaves a single partial block
+        assertEquals(gray(43), out[0]);
+        assertEquals(0, out[1]);
+    }
+
+    @Test
+    public void averagesEveryChannel() {
+        int[] strip = { 0x00000000, 0xff0a141e, 0x80ffffff, 0x40010203 };
+        int[] out = new int[1];
+        AreaDownscaler.reduceStrip(strip, 0, 2, 2, 2, out, 0);
+
+        int a = (0x00 + 0xff + 0x80 + 0x40 + 2) / 4;
+        int r = (0x00 + 0x0a + 0xff + 0x01 + 2) / 4;
+        int g = (0x00 + 0x14 + 0xff + 0x02 + 2) / 4;
+        int b = (0x00 + 0x1e + 0xff + 0x03 + 2) / 4;
+        assertEquals(a << 24 | r << 16 | g << 8 | b, out[0]);
+    }
+
+    @Test
+    public void boxReduceHandlesUnevenImage() {
+        PixelBuffer src = new PixelBuffer(
+            5,
+            3,
+            new int[] {
+                gray(10), gray(20), gray(30), gray(40), gray(50),
+                gray(30), gray(40), gray(50), gray(60), gray(71),
+                gray(100), gray(110), gray(120), gray(130), gray(140),
+            }
+        );
+        PixelBuffer reduced = AreaDownscaler.boxReduce(src, 2);
+
+        assertEquals(3, reduced.getWidth());
+        assertEquals(2, reduced.getHeight());
+        assertArrayEquals(
+            new int[] { gray(25), gray(45), gray(61), gray(105), gray(125), gray(140) },
+            reduced.getPixels()
+        );
+    }
+
+    @Test
+    public void boxReduceReachesExactMultiple() {
+        // An exact multiple needs no final scale
+        int factor = AreaDownscaler.getBoxFactor(100, 60, 25, 15);
+        PixelBuffer boxed = AreaDownscaler.boxReduce(new PixelBuffer(100, 60), factor);
+        assertEquals(25, boxed.getWidth());
+        assertEquals(15, boxed.getHeight());
+
+        // Otherwise the box pass stays at or above the target for the filtered scale
+        factor = AreaDownscaler.getBoxFactor(101, 67, 30, 20);
+        PixelBuffer reduced = AreaDownscaler.boxReduce(new PixelBuffer(101, 67), factor);
+        assertTrue(reduced.getWidth() >= 30);
+        assertTrue(reduced.getHeight() >= 20);
+    }
+
+    private static int gray(int value) {
+        return 0xff000000 | value << 16 | value << 8 | value;
+    }
+}
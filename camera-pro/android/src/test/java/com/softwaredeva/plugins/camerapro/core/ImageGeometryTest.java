@@ -0,0 +1,91 @@
+package com.softwaredeva.plugins.camerapro.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Resized dimensions and sample sizes for odd sizes, missing bounds and sources in either
+ * orientation, and sample sizes raised to fit a byte budget.
+ */
+public class ImageGeometryTest {
+
+    @Test
+    public void resizePreservesAspectRatio() {
+        assertArrayEquals(new int[] { 1000, 750 }, ImageGeometry.getResizedDimensions(4000, 3000, 1000, 1000));
+        assertArrayEquals(new int[] { 750, 1000 }, ImageGeometry.getResizedDimensions(3000, 4000, 1000, 1000));
+        // 19.9 rounds to the nearest pixel
+        assertArrayEquals(new int[] { 30, 20 }, ImageGeometry.getResizedDimensions(101, 67, 30, 30));
+    }
+
+    @Test
+    public void resizeTreatsZeroAsNoRestriction() {
+        assertArrayEquals(new int[] { 4000, 3000 }, ImageGeometry.getResizedDimensions(4000, 3000, 0, 0));
+        assertArrayEquals(new int[] { 1000, 750 }, ImageGeometry.getResizedDimensions(4000, 3000, 1000, 0));
+        assertArrayEquals(new int[] { 1000, 750 }, ImageGeometry.getResizedDimensions(4000, 3000, 0, 750));
+    }
+
+    @Test
+    public void resizeNeverUpscales() {
+        assertArrayEquals(new int[] { 800, 600 }, ImageGeometry.getResizedDimensions(800, 600, 1000, 1000));
+    }
+
+    @Test
+    public void sampleSizeIsOneWithoutRequest() {
+        assertEquals(1, ImageGeometry.calculateInSampleSize(4000, 3000, 0, 0));
+        assertEquals(1, ImageGeometry.calculateInSampleSize(4000, 3000, -1, 0));
+        assertEquals(1, ImageGeometry.calculateInSampleSize(0, 3000, 100, 100));
+        assertEquals(1, ImageGeometry.calculateInSampleSize(4000, -1, 100, 100));
+        assertEquals(1, ImageGeometry.calculateInSampleSize(800, 600, 1000, 1000));
+    }
+
+    @Test
+    public void sampleSizeIsLargestPowerOfTwoAboveTarget() {
+        // 1000x750 is exactly a quarter of the source
+        assertEquals(4, ImageGeometry.calculateInSampleSize(4000, 3000, 1000, 750));
+        assertEquals(2, ImageGeometry.calculateInSampleSize(4000, 3000, 1001, 751));
+        assertEquals(8, ImageGeometry.calculateInSampleSize(4000, 3000, 320, 0));
+        // Odd sizes are rounded down by the decoder, 101 / 4 is below 30
+        assertEquals(2, ImageGeometry.calculateInSampleSize(101, 67, 30, 20));
+    }
+
+    @Test
+    public void sampleSizeIgnoresOrientation() {
+        // The bounds apply after the exif rotation, which swaps the sides for 90 and 270
+        int landscape = ImageGeometry.calculateInSampleSize(4000, 3000, 1000, 750);
+        assertEquals(landscape, ImageGeometry.calculateInSampleSize(3000, 4000, 1000, 750));
+        assertEquals(landscape, ImageGeometry.calculateInSampleSize(4000, 3000, 750, 1000));
+        assertEquals(landscape, ImageGeometry.calculateInSampleSize(3000, 4000, 750, 1000));
+    }
+
+    @Test
+    public void fitKeepsSampleSizeThatFits() {
+        assertEquals(1, ImageGeometry.fitSampleSize(4000, 3000, 1, 4, 4000L * 3000 * 4));
+        assertEquals(4, ImageGeometry.fitSampleSize(4000, 3000, 4, 4, Long.MAX_VALUE));
+        // Invalid sample sizes are raised to 1
+        assertEquals(1, ImageGeometry.fitSampleSize(4000, 3000, 0, 4, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void fitRaisesSampleSizeUntilBytesFit() {
+        // 500x375 pixels of 4 bytes is the first to fit in 1MB
+        assertEquals(8, ImageGeometry.fitSampleSize(4000, 3000, 1, 4, 1000000));
+        assertEquals(8, ImageGeometry.fitSampleSize(4000, 3000, 2, 4, 1000000));
+    }
+
+    @Test
+    public void fitStopsAtLargestSide() {
+        // Nothing fits, the sample size stops once a single pixel is left
+        assertEquals(4096, ImageGeometry.fitSampleSize(4000, 3000, 1, 4, 0));
+        assertEquals(1, ImageGeometry.fitSampleSize(1, 1, 1, 4, 0));
+        assertEquals(8, ImageGeometry.fitSampleSize(5, 3, 1, 4, 0));
+    }
+
+    @Test
+    public void sampledBytesRoundUp() {
+        assertEquals(4000L * 3000 * 4, ImageGeometry.getSampledBytes(4000, 3000, 1, 4));
+        assertEquals(25 * 15 * 4, ImageGeometry.getSampledBytes(100, 60, 4, 4));
+        assertEquals(51 * 34 * 4, ImageGeometry.getSampledBytes(101, 67, 2, 4));
+        assertEquals(4, ImageGeometry.getSampledBytes(3, 3, 8, 4));
+    }
+}
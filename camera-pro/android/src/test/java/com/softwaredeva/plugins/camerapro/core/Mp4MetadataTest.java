@@ -0,0 +1,377 @@
+package com.softwaredeva.plugins.camerapro.core;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Reads sample files built box by box: camera recordings with the movie header before or
+ * after the media data, version 1 headers, several tracks and fragmented files.
+ */
+public class Mp4MetadataTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsFastStartFile() throws Exception {
+        File file = write(
+            ftyp(),
+            moov(mvhd(0, 1000, 12345), videoTrak(0, 1920, 1080, 90, "avc1", 0, 0)),
+            // A size of 0 runs to the end of the file
+            rawBox(0, "mdat", new byte[4096])
+        );
+
+        Mp4Metadata metadata = read(file);
+        assertEquals(12345, metadata.getDuration());
+        assertEquals(1920, metadata.getWidth());
+        assertEquals(1080, metadata.getHeight());
+        assertEquals(90, metadata.getRotation());
+        assertEquals(1080, metadata.getDisplayWidth());
+        assertEquals(1920, metadata.getDisplayHeight());
+        assertEquals("avc1", metadata.getCodec());
+        assertEquals((long) (file.length() * 8 * 1000.0 / 12345), metadata.getBitrate());
+    }
+
+    @Test
+    public void skipsMediaDataBeforeMovieHeader() throws Exception {
+        long mediaSize = 64L * 1024 * 1024;
+        File file = folder.newFile();
+        try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+            out.write(ftyp());
+            // A 64 bit size, the media data itself is left sparse
+            out.write(box("mdat", mediaSize + 16));
+            out.setLength(out.length() + mediaSize);
+            out.seek(out.length());
+            out.write(moov(mvhd(1, 90000, 90000L * 3600), videoTrak(1, 3840, 2160, 0, "hvc1", 0, 0)));
+        }
+
+        try (RandomAccessFile in = new RandomAccessFile(file, "r"); CountingChannel channel = new CountingChannel(in.getChannel())) {
+            Mp4Metadata metadata = Mp4Metadata.read(channel);
+            assertEquals(3600 * 1000, metadata.getDuration());
+            assertEquals(3840, metadata.getDisplayWidth());
+            assertEquals(2160, metadata.getDisplayHeight());
+            assertEquals(0, metadata.getRotation());
+            assertEquals("hvc1", metadata.getCodec());
+            assertTrue("Read " + channel.bytesRead + " bytes", channel.bytesRead < 1024);
+        }
+    }
+
+    @Test
+    public void readsFirstVideoTrack() throws Exception {
+        File file = write(
+            ftyp(),
+            moov(
+                mvhd(0, 600, 6000),
+                trak(tkhd(0, 0, 0, 0), mdia(hdlr("soun"), stbl(sampleEntry("mp4a", 0, 0)))),
+                videoTrak(0, 1280, 720, 270, "avc1", 0, 0),
+                videoTrak(0, 640, 480, 0, "mp4v", 0, 0)
+            ),
+            box("mdat", new byte[16])
+        );
+
+        Mp4Metadata metadata = read(file);
+        assertEquals(10000, metadata.getDuration());
+        assertEquals(1280, metadata.getWidth());
+        assertEquals(270, metadata.getRotation());
+        assertEquals("avc1", metadata.getCodec());
+    }
+
+    @Test
+    public void readsSizeFromSampleEntry() throws Exception {
+        File file = write(ftyp(), moov(mvhd(0, 1000, 1000), videoTrak(0, 0, 0, 180, "av01", 1080, 1350)));
+
+        Mp4Metadata metadata = read(file);
+        assertEquals(1080, metadata.getWidth());
+        assertEquals(1350, metadata.getHeight());
+        assertEquals(180, metadata.getRotation());
+        assertEquals("av01", metadata.getCodec());
+    }
+
+    @Test
+    public void readsFragmentDuration() throws Exception {
+        File file = write(
+            ftyp(),
+            moov(mvhd(0, 1000, 0), videoTrak(0, 1920, 1080, 0, "avc1", 0, 0), box("mvex", fullBox("mehd", 0, intBytes(4500)))),
+            box("moof", new byte[32]),
+            box("mdat", new byte[64])
+        );
+
+        assertEquals(4500, read(file).getDuration());
+    }
+
+    @Test
+    public void leavesUnknownDurationEmpty() throws Exception {
+        File file = write(ftyp(), moov(mvhd(0, 0, 0), videoTrak(0, 1920, 1080, 0, "avc1", 0, 0)));
+
+        Mp4Metadata metadata = read(file);
+        assertEquals(0, metadata.getDuration());
+        assertEquals(0, metadata.getBitrate());
+    }
+
+    @Test
+    public void computesRotationFromMatrix() {
+        assertEquals(0, Mp4Metadata.getRotation(0x10000, 0));
+        assertEquals(90, Mp4Metadata.getRotation(0, 0x10000));
+        assertEquals(180, Mp4Metadata.getRotation(-0x10000, 0));
+        assertEquals(270, Mp4Metadata.getRotation(0, -0x10000));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsFileWithoutMovieHeader() throws Exception {
+        read(write(ftyp(), box("mdat", new byte[128])));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsFileWithoutVideoTrack() throws Exception {
+        read(write(ftyp(), moov(mvhd(0, 1000, 1000), trak(tkhd(0, 0, 0, 0), mdia(hdlr("soun"), stbl(sampleEntry("mp4a", 0, 0)))))));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFormats() throws Exception {
+        // The start of a webm file
+        read(write(new byte[] { 0x1a, 0x45, (byte) 0xdf, (byte) 0xa3, (byte) 0x9f, 0x42, (byte) 0x86, (byte) 0x81, 0x01 }));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedFile() throws Exception {
+        byte[] moov = moov(mvhd(0, 1000, 1000), videoTrak(0, 1920, 1080, 0, "avc1", 0, 0));
+        byte[] truncated = new byte[moov.length / 2];
+        System.arraycopy(moov, 0, truncated, 0, truncated.length);
+        read(write(ftyp(), truncated));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedHeaderBox() throws Exception {
+        read(write(ftyp(), moov(box("mvhd", new byte[6]), videoTrak(0, 1920, 1080, 0, "avc1", 0, 0))));
+    }
+
+    private Mp4Metadata read(File file) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            return Mp4Metadata.read(in.getChannel());
+        }
+    }
+
+    private File write(byte[]... boxes) throws IOException {
+        File file = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            for (byte[] box : boxes) {
+                out.write(box);
+            }
+        }
+        return file;
+    }
+
+    private static byte[] ftyp() {
+        byte[] brands = "isomiso2avc1mp41".getBytes(StandardCharsets.ISO_8859_1);
+        return box("ftyp", concat("isom".getBytes(StandardCharsets.ISO_8859_1), intBytes(512), brands));
+    }
+
+    private static byte[] moov(byte[]... children) {
+        return box("moov", concat(children));
+    }
+
+    private static byte[] mvhd(int version, int timescale, long duration) {
+        ByteBuffer payload = ByteBuffer.allocate(version == 1 ? 108 : 96);
+        if (version == 1) {
+            payload.putLong(0).putLong(0).putInt(timescale).putLong(duration);
+        } else {
+            payload.putInt(0).putInt(0).putInt(timescale).putInt((int) duration);
+        }
+        return fullBox("mvhd", version, payload.array());
+    }
+
+    private static byte[] videoTrak(int version, int width, int height, int rotation, String codec, int entryWidth, int entryHeight) {
+        return trak(tkhd(version, width, height, rotation), mdia(hdlr("vide"), stbl(sampleEntry(codec, entryWidth, entryHeight))));
+    }
+
+    private static byte[] trak(byte[]... children) {
+        return box("trak", concat(children));
+    }
+
+    private static byte[] tkhd(int version, int width, int height, int rotation) {
+        ByteBuffer payload = ByteBuffer.allocate((version == 1 ? 32 : 20) + 16 + 36 + 8);
+        if (version == 1) {
+            payload.putLong(0).putLong(0).putInt(1).putInt(0).putLong(0);
+        } else {
+            payload.putInt(0).putInt(0).putInt(1).putInt(0).putInt(0);
+        }
+        payload.put(new byte[16]);
+        int cos = (int) Math.round(Math.cos(Math.toRadians(rotation))) << 16;
+        int sin = (int) Math.round(Math.sin(Math.toRadians(rotation))) << 16;
+        payload.putInt(cos).putInt(sin).putInt(0);
+        payload.putInt(-sin).putInt(cos).putInt(0);
+        payload.putInt(0).putInt(0).putInt(0x40000000);
+        payload.putInt(width << 16).putInt(height << 16);
+        return fullBox("tkhd", version, payload.array());
+    }
+
+    private static byte[] mdia(byte[] hdlr, byte[] stbl) {
+        byte[] mdhd = fullBox("mdhd", 0, new byte[20]);
+        return box("mdia", concat(mdhd, hdlr, box("minf", concat(box("vmhd", new byte[12]), stbl))));
+    }
+
+    private static byte[] hdlr(String handler) {
+        return fullBox("hdlr", 0, concat(intBytes(0), handler.getBytes(StandardCharsets.ISO_8859_1), new byte[13]));
+    }
+
+    private static byte[] stbl(byte[] sampleEntry) {
+        byte[] stsd = fullBox("stsd", 0, concat(intBytes(1), sampleEntry));
+        return box("stbl", concat(stsd, fullBox("stts", 0, intBytes(0)), fullBox("stsz", 0, new byte[8])));
+    }
+
+    private static byte[] sampleEntry(String codec, int width, int height) {
+        ByteBuffer payload = ByteBuffer.allocate(78);
+        payload.position(6);
+        payload.putShort((short) 1);
+        payload.position(24);
+        payload.putShort((short) width).putShort((short) height);
+        return box(codec, payload.array());
+    }
+
+    private static byte[] fullBox(String type, int version, byte[] payload) {
+        return box(type, concat(intBytes(version << 24), payload));
+    }
+
+    private static byte[] box(String type, byte[] payload) {
+        return rawBox(8 + payload.length, type, payload);
+    }
+
+    private static byte[] rawBox(int size, String type, byte[] payload) {
+        return concat(intBytes(size), type.getBytes(StandardCharsets.ISO_8859_1), payload);
+    }
+
+    private static byte[] box(String type, long largeSize) {
+        return concat(intBytes(1), type.getBytes(StandardCharsets.ISO_8859_1), longBytes(largeSize));
+    }
+
+    private static byte[] intBytes(int value) {
+        return ByteBuffer.allocate(4).putInt(value).array();
+    }
+
+    private static byte[] longBytes(long value) {
+        return ByteBuffer.allocate(8).putLong(value).array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Counts the bytes read through positioned reads, the only reads the parser may use
+     */
+    private static class CountingChannel extends FileChannel {
+
+        private final FileChannel channel;
+        long bytesRead = 0;
+
+        CountingChannel(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            int read = channel.read(dst, position);
+            bytesRead += Math.max(0, read);
+            return read;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long position() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileChannel truncate(long size) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void force(boolean metaData) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.softwaredeva.plugins.camerapro.core;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+/**
+ * Reserves and releases bytes from one or more threads, checking the accounting, the waits
+ * for room and the admission of reservations larger than the whole capacity.
+ */
+public class PixelMemoryBudgetTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    @Test
+    public void accountsForResizesAndRelease() throws Exception {
+        PixelMemoryBudget budget = new PixelMemoryBudget(100);
+        PixelMemoryBudget.Reservation first = budget.newReservation();
+        PixelMemoryBudget.Reservation second = budget.newReservation();
+
+        assertEquals(0, first.resize(60));
+        assertEquals(0, second.resize(30));
+        assertEquals(90, budget.getReserved());
+
+        // Shrinking releases the difference right away
+        first.resize(20);
+        assertEquals(20, first.getBytes());
+        assertEquals(50, budget.getReserved());
+
+        first.close();
+        assertEquals(0, first.getBytes());
+        assertEquals(30, budget.getReserved());
+        // Closing twice releases nothing more
+        first.close();
+        assertEquals(30, budget.getReserved());
+
+        second.close();
+        assertEquals(0, budget.getReserved());
+        assertEquals(90, budget.getPeakReserved());
+        assertEquals(2, budget.getReservations());
+        assertEquals(0, budget.getWaits());
+    }
+
+    @Test
+    public void admitsOversizeReservationWhenIdle() throws Exception {
+        PixelMemoryBudget budget = new PixelMemoryBudget(100);
+        try (PixelMemoryBudget.Reservation reservation = budget.newReservation()) {
+            assertEquals(0, reservation.resize(500));
+            assertEquals(500, budget.getReserved());
+            assertEquals(500, budget.getPeakReserved());
+        }
+        assertEquals(0, budget.getReserved());
+        assertEquals(0, budget.getWaits());
+    }
+
+    @Test
+    public void admitsOversizeGrowthOfOnlyReservation() throws Exception {
+        PixelMemoryBudget budget = new PixelMemoryBudget(100);
+        try (PixelMemoryBudget.Reservation reservation = budget.newReservation()) {
+            reservation.resize(80);
+            // The bytes already held can't be waited for
+            assertEquals(0, reservation.resize(300));
+            assertEquals(300, budget.getReserved());
+        }
+    }
+
+    @Test
+    public void waitsForRoomUntilReleased() throws Exception {
+        PixelMemoryBudget budget = new PixelMemoryBudget(100);
+        PixelMemoryBudget.Reservation first = budget.newReservation();
+        first.resize(80);
+
+        CountDownLatch admitted = new CountDownLatch(1);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        PixelMemoryBudget.Reservation second = budget.newReservation();
+        Thread waiter = new Thread(
+            () -> {
+                try {
+                    second.resize(50);
+                    admitted.countDown();
+                } catch (Throwable ex) {
+                    failure.set(ex);
+                }
+            }
+        );
+        waiter.start();
+
+        assertFalse(admitted.await(100, TimeUnit.MILLISECONDS));
+        assertEquals(80, budget.getReserved());
+
+        first.close();
+        assertTrue(admitted.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        waiter.join(TIMEOUT_MS);
+        assertNull(failure.get());
+        assertEquals(50, budget.getReserved());
+        assertEquals(1, budget.getWaits());
+        assertTrue(budget.getMaxWaitNanos() > 0);
+        assertEquals(budget.getMaxWaitNanos(), budget.getTotalWaitNanos());
+        second.close();
+    }
+
+    @Test
+    public void interruptedWaitLeavesBudgetUnchanged() throws Exception {
+        PixelMemoryBudget budget = new PixelMemoryBudget(100);
+        PixelMemoryBudget.Reservation first = budget.newReservation();
+        first.resize(80);
+
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        PixelMemoryBudget.Reservation second = budget.newReservation();
+        Thread waiter = new Thread(
+            () -> {
+                try {
+                    second.resize(50);
+                } catch (Throwable ex) {
+                    failure.set(ex);
+                }
+            }
+        );
+        waiter.start();
+        waitUntilBlocked(waiter);
+        waiter.interrupt();
+        waiter.join(TIMEOUT_MS);
+
+        assertTrue(failure.get() instanceof InterruptedException);
+        assertEquals(0, second.getBytes());
+        assertEquals(80, budget.getReserved());
+
+        // The interrupted reservation left the queue, the next one isn't stuck behind it
+        try (PixelMemoryBudget.Reservation third = budget.newReservation()) {
+            assertEquals(0, third.resize(20));
+            assertEquals(100, budget.getReserved());
+        }
+        first.close();
+    }
+
+    @Test
+    public void resetStatsKeepsCurrentReservations() throws Exception {
+        PixelMemoryBudget budget = new PixelMemoryBudget(100);
+        PixelMemoryBudget.Reservation first = budget.newReservation();
+        first.resize(70);
+        first.resize(40);
+        assertEquals(70, budget.getPeakReserved());
+
+        budget.resetStats();
+        assertEquals(40, budget.getPeakReserved());
+        assertEquals(0, budget.getReservations());
+        assertEquals(40, budget.getReserved());
+        first.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyCapacity() {
+        new PixelMemoryBudget(0);
+    }
+
+    private static void waitUntilBlocked(Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (thread.getState() != Thread.State.WAITING) {
+            assertTrue("Thread never waited", System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+}
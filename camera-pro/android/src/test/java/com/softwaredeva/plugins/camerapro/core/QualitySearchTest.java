@@ -0,0 +1,90 @@
+package com.softwaredeva.plugins.camerapro.core;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Runs the search against encoders whose size grows with the quality, including budgets
+ * that no quality fits in, where the lowest quality must be the last one tried.
+ */
+public class QualitySearchTest {
+
+    private static final int MIN_QUALITY = 10;
+
+    @Test
+    public void findsHighestQualityThatFits() {
+        QualitySearch search = new QualitySearch(MIN_QUALITY, 99, 7);
+        run(search, 100, 5000);
+        assertEquals(50, search.getBest());
+    }
+
+    @Test
+    public void findsMaxQualityWhenEverythingFits() {
+        QualitySearch search = new QualitySearch(MIN_QUALITY, 99, 7);
+        run(search, 100, Integer.MAX_VALUE);
+        assertEquals(99, search.getBest());
+    }
+
+    @Test
+    public void triesLowestQualityLastWhenNoQualityFits() {
+        QualitySearch search = new QualitySearch(MIN_QUALITY, 99, 3);
+        List<Integer> tried = run(search, 100, 500);
+
+        assertEquals(-1, search.getBest());
+        assertEquals(4, tried.size());
+        assertEquals(MIN_QUALITY, (int) tried.get(tried.size() - 1));
+        assertEquals(-1, search.next());
+    }
+
+    @Test
+    public void doesNotRetryLowestQualityReachedBySearch() {
+        QualitySearch search = new QualitySearch(MIN_QUALITY, 12, 7);
+        List<Integer> tried = run(search, 100, 500);
+
+        assertEquals(-1, search.getBest());
+        assertEquals(MIN_QUALITY, (int) tried.get(tried.size() - 1));
+        assertEquals(tried.indexOf(MIN_QUALITY), tried.lastIndexOf(MIN_QUALITY));
+    }
+
+    @Test
+    public void lowestQualityFitsAfterSearchRunsOut() {
+        QualitySearch search = new QualitySearch(MIN_QUALITY, 99, 2);
+        run(search, 100, MIN_QUALITY * 100);
+        assertEquals(MIN_QUALITY, search.getBest());
+    }
+
+    @Test
+    public void emptyRangeTriesNothing() {
+        QualitySearch search = new QualitySearch(MIN_QUALITY, MIN_QUALITY - 1, 7);
+        assertEquals(-1, search.next());
+        assertEquals(-1, search.getBest());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsNextBeforeReport() {
+        QualitySearch search = new QualitySearch(MIN_QUALITY, 99, 7);
+        search.next();
+        search.next();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsReportWithoutQuality() {
+        new QualitySearch(MIN_QUALITY, 99, 7).report(true);
+    }
+
+    /**
+     * Run the search against an encoder producing the given bytes per quality point
+     * @return the qualities tried, in order
+     */
+    private static List<Integer> run(QualitySearch search, int bytesPerQuality, int budget) {
+        List<Integer> tried = new ArrayList<>();
+        for (int quality = search.next(); quality >= 0; quality = search.next()) {
+            tried.add(quality);
+            search.report((long) quality * bytesPerQuality <= budget);
+        }
+        return tried;
+    }
+}
@@ -0,0 +1,99 @@
+package com.softwaredeva.plugins.camerapro.core;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Percentiles by nearest rank over partly filled and wrapped windows, and the lifetime
+ * count, total and maximum kept past the values the window dropped.
+ */
+public class SampleWindowTest {
+
+    @Test
+    public void emptyWindowReturnsZero() {
+        SampleWindow window = new SampleWindow(4);
+        assertEquals(0, window.getCount());
+        assertEquals(0, window.getTotal());
+        assertEquals(0, window.getMax());
+        assertEquals(0, window.getPercentile(50));
+        assertEquals(0, window.getPercentile(100));
+    }
+
+    @Test
+    public void percentilesOfPartlyFilledWindow() {
+        SampleWindow window = new SampleWindow(10);
+        window.add(30);
+        window.add(10);
+        window.add(20);
+
+        // Only the 3 values added count, not the empty slots
+        assertEquals(10, window.getPercentile(0));
+        assertEquals(10, window.getPercentile(33));
+        assertEquals(20, window.getPercentile(50));
+        assertEquals(20, window.getPercentile(66));
+        assertEquals(30, window.getPercentile(67));
+        assertEquals(30, window.getPercentile(100));
+    }
+
+    @Test
+    public void nearestRankPercentiles() {
+        SampleWindow window = new SampleWindow(100);
+        for (int value = 100; value >= 1; value--) {
+            window.add(value);
+        }
+        assertEquals(1, window.getPercentile(1));
+        assertEquals(50, window.getPercentile(50));
+        assertEquals(90, window.getPercentile(90));
+        assertEquals(95, window.getPercentile(94.5));
+        assertEquals(99, window.getPercentile(99));
+        assertEquals(100, window.getPercentile(100));
+    }
+
+    @Test
+    public void wrapsAroundKeepingRecentValues() {
+        SampleWindow window = new SampleWindow(3);
+        window.add(1000);
+        window.add(1);
+        window.add(2);
+        window.add(3);
+        window.add(4);
+
+        // 1000 and 1 were overwritten, the window holds 2, 3 and 4
+        assertEquals(2, window.getPercentile(0));
+        assertEquals(3, window.getPercentile(50));
+        assertEquals(4, window.getPercentile(100));
+
+        // The lifetime statistics still include every value
+        assertEquals(5, window.getCount());
+        assertEquals(1010, window.getTotal());
+        assertEquals(1000, window.getMax());
+    }
+
+    @Test
+    public void wrapsAroundSeveralTimes() {
+        SampleWindow window = new SampleWindow(4);
+        for (int value = 1; value <= 11; value++) {
+            window.add(value);
+        }
+        assertEquals(8, window.getPercentile(0));
+        assertEquals(9, window.getPercentile(50));
+        assertEquals(11, window.getPercentile(100));
+        assertEquals(11, window.getCount());
+        assertEquals(66, window.getTotal());
+    }
+
+    @Test
+    public void maxOfNegativeValues() {
+        SampleWindow window = new SampleWindow(2);
+        window.add(-5);
+        window.add(-3);
+        assertEquals(-3, window.getMax());
+        assertEquals(-5, window.getPercentile(50));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyCapacity() {
+        new SampleWindow(0);
+    }
+}
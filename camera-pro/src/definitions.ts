@@ -1,9 +1,251 @@
-import type { PermissionState } from '@capacitor/core';
+import type { PermissionState, PluginListenerHandle } from '@capacitor/core';
 
 export type CameraProPermissionState = PermissionState | 'limited';
 
 export type CameraProPermissionType = 'camera' | 'photos';
 
+export interface PhotoPreviewEvent {
+  /**
+   * The id of the `getPhoto` call the preview belongs to, to tell apart the
+   * previews of calls in progress at the same time.
+   *
+   * @since 1.3.0
+   */
+  callbackId: string;
+  /**
+   * The url starting with 'data:image/jpeg;base64,' and the base64 encoded
+   * string representation of the preview, rotated upright.
+   *
+   * @since 1.3.0
+   */
+  dataUrl: string;
+  /**
+   * The format of the preview, always jpeg.
+   *
+   * @since 1.3.0
+   */
+  format: string;
+  /**
+   * The width of the preview
+   *
+   * @since 1.3.0
+   */
+  width: number;
+  /**
+   * The height of the preview
+   *
+   * @since 1.3.0
+   */
+  height: number;
+}
+
+export interface ClearCacheResult {
+  /**
+   * The number of bytes freed.
+   *
+   * @since 1.3.0
+   */
+  freedSize: number;
+}
+
+export interface CacheStats {
+  /**
+   * The size of the cached files, in bytes.
+   *
+   * @since 1.3.0
+   */
+  size: number;
+  /**
+   * The number of cached files.
+   *
+   * @since 1.3.0
+   */
+  count: number;
+  /**
+   * The size above which the least recently used files are deleted, in bytes.
+   * Set with the `maxCacheSize` plugin configuration.
+   *
+   * @since 1.3.0
+   */
+  maxSize: number;
+}
+
+export interface ImageMetrics {
+  /**
+   * The time in milliseconds spent in each stage the call went through:
+   * intent (the camera or picker activity, user time included), edit,
+   * wait (for memory to decode the image in), decode, exif, transform (orientation and resize), derivatives, encode,
+   * base64, write (encoding to the file), gallery and total.
+   *
+   * @since 1.3.0
+   */
+  durations: { [stage: string]: number };
+  /**
+   * The size in bytes of the decoded image, the encoded image and the
+   * base64 string.
+   *
+   * @since 1.3.0
+   */
+  bytes: { [counter: string]: number };
+}
+
+export interface PipelineMetrics {
+  /**
+   * The number of calls that returned a result.
+   *
+   * @since 1.3.0
+   */
+  calls: number;
+  /**
+   * When the metrics were last reset, in milliseconds since the epoch.
+   *
+   * @since 1.3.0
+   */
+  since: number;
+  /**
+   * The durations of each stage, see `ImageMetrics`.
+   *
+   * @since 1.3.0
+   */
+  durations: { [stage: string]: DurationMetrics };
+  /**
+   * The sizes of each counter, see `ImageMetrics`.
+   *
+   * @since 1.3.0
+   */
+  bytes: { [counter: string]: ByteMetrics };
+  /**
+   * The memory reserved for decoded images.
+   *
+   * @since 1.3.0
+   */
+  memory: PixelMemoryMetrics;
+}
+
+export interface DurationMetrics {
+  /**
+   * The number of calls that went through the stage.
+   *
+   * @since 1.3.0
+   */
+  count: number;
+  /**
+   * The mean duration in milliseconds.
+   *
+   * @since 1.3.0
+   */
+  mean: number;
+  /**
+   * The median duration in milliseconds, over the 256 most recent calls.
+   *
+   * @since 1.3.0
+   */
+  p50: number;
+  /**
+   * The 90th percentile in milliseconds, over the 256 most recent calls.
+   *
+   * @since 1.3.0
+   */
+  p90: number;
+  /**
+   * The 99th percentile in milliseconds, over the 256 most recent calls.
+   *
+   * @since 1.3.0
+   */
+  p99: number;
+  /**
+   * The longest duration in milliseconds.
+   *
+   * @since 1.3.0
+   */
+  max: number;
+}
+
+export interface ByteMetrics {
+  /**
+   * The number of calls that counted bytes.
+   *
+   * @since 1.3.0
+   */
+  count: number;
+  /**
+   * The total number of bytes.
+   *
+   * @since 1.3.0
+   */
+  total: number;
+  /**
+   * The median size in bytes, over the 256 most recent calls.
+   *
+   * @since 1.3.0
+   */
+  p50: number;
+  /**
+   * The 90th percentile in bytes, over the 256 most recent calls.
+   *
+   * @since 1.3.0
+   */
+  p90: number;
+  /**
+   * The 99th percentile in bytes, over the 256 most recent calls.
+   *
+   * @since 1.3.0
+   */
+  p99: number;
+  /**
+   * The largest size in bytes.
+   *
+   * @since 1.3.0
+   */
+  max: number;
+}
+
+export interface PixelMemoryMetrics {
+  /**
+   * The bytes of decoded pixels the images processed at the same time can
+   * hold together. Decodes wait while the others leave too little of it.
+   *
+   * @since 1.3.0
+   */
+  capacity: number;
+  /**
+   * The bytes currently reserved.
+   *
+   * @since 1.3.0
+   */
+  reserved: number;
+  /**
+   * The most bytes reserved at the same time.
+   *
+   * @since 1.3.0
+   */
+  peak: number;
+  /**
+   * The number of decodes that reserved memory.
+   *
+   * @since 1.3.0
+   */
+  reservations: number;
+  /**
+   * The number of decodes that had to wait for memory.
+   *
+   * @since 1.3.0
+   */
+  waits: number;
+  /**
+   * The total time spent waiting for memory, in milliseconds.
+   *
+   * @since 1.3.0
+   */
+  waitTime: number;
+  /**
+   * The longest wait for memory, in milliseconds.
+   *
+   * @since 1.3.0
+   */
+  maxWaitTime: number;
+}
+
 export interface PermissionStatus {
   camera: CameraProPermissionState;
   photos: CameraProPermissionState;
@@ -30,6 +272,18 @@ export interface CameraProPlugin {
    */
   getVideo(options: VideoOptions): Promise<Video>;
 
+  /**
+   * Extract the poster frame of a video and key frames spread evenly over it,
+   * as JPEG files. Frames extracted before with the same options are reused.
+   *
+   * Android only.
+   *
+   * @since 1.3.0
+   */
+  getVideoThumbnails(
+    options: VideoThumbnailsOptions,
+  ): Promise<VideoThumbnails>;
+
   /**
    * Allows the user to pick multiple pictures from the photo gallery.
    * On iOS 13 and older it only allows to pick one picture.
@@ -38,6 +292,89 @@ export interface CameraProPlugin {
    */
   pickImages(options: GalleryImageOptions): Promise<GalleryPhotos>;
 
+  /**
+   * Allows the user to pick multiple videos from the gallery. The videos are
+   * returned in the order they were picked.
+   *
+   * Android only.
+   *
+   * @since 1.3.0
+   */
+  pickVideos(options: GalleryVideoOptions): Promise<GalleryVideos>;
+
+  /**
+   * Listen for the photos processed by `pickImages` when the `progressive`
+   * option is enabled. Each picked photo is delivered as soon as it is ready.
+   *
+   * Only available on Android.
+   *
+   * @since 1.3.0
+   */
+  addListener(
+    eventName: 'pickImagesProgress',
+    listenerFunc: (event: PickImagesProgressEvent) => void,
+  ): Promise<PluginListenerHandle> & PluginListenerHandle;
+
+  /**
+   * Listen for the preview of the photo returned by `getPhoto` when the
+   * `preview` option is enabled. The preview is the thumbnail embedded in the
+   * image, sent before the image itself is processed.
+   *
+   * Only available on Android.
+   *
+   * @since 1.3.0
+   */
+  addListener(
+    eventName: 'photoPreview',
+    listenerFunc: (event: PhotoPreviewEvent) => void,
+  ): Promise<PluginListenerHandle> & PluginListenerHandle;
+
+  /**
+   * Remove all listeners for this plugin.
+   *
+   * @since 1.3.0
+   */
+  removeAllListeners(): Promise<void>;
+
+  /**
+   * Delete the photos, videos and derivatives kept by the plugin.
+   * Paths returned before can't be read anymore.
+   *
+   * Android only.
+   *
+   * @since 1.3.0
+   */
+  clearCache(): Promise<ClearCacheResult>;
+
+  /**
+   * Get the size of the photos, videos and derivatives kept by the plugin.
+   *
+   * Android only.
+   *
+   * @since 1.3.0
+   */
+  getCacheStats(): Promise<CacheStats>;
+
+  /**
+   * Get the time spent in each stage of the image processing and the size of
+   * the data it went through, aggregated over the calls that returned a result
+   * since the plugin was loaded or the metrics were reset.
+   *
+   * Android only.
+   *
+   * @since 1.3.0
+   */
+  getMetrics(): Promise<PipelineMetrics>;
+
+  /**
+   * Clear the metrics returned by `getMetrics`.
+   *
+   * Android only.
+   *
+   * @since 1.3.0
+   */
+  resetMetrics(): Promise<void>;
+
   /**
    * Check camera and photo album permissions
    *
@@ -57,7 +394,8 @@ export interface CameraProPlugin {
 
 export interface ImageOptions {
   /**
-   * The quality of image to return as JPEG, from 0-100
+   * The quality of image to return, from 0-100.
+   * For webp-lossless it trades encoding speed for size on Android 11+.
    *
    * @since 1.0.0
    */
@@ -111,6 +449,76 @@ export interface ImageOptions {
    * @since 1.0.0
    */
   correctOrientation?: boolean;
+  /**
+   * Android only: Which exif tags to return in `exif`.
+   * 'essential' returns the capture date, camera, exposure, orientation and
+   * dimension tags, 'gps' returns the location tags plus decimal
+   * GPSLatitudeDecimal, GPSLongitudeDecimal and GPSAltitudeDecimal values,
+   * 'none' returns an empty object. A list of exif tag names can also be
+   * passed. Only the selected tags the image has are keys of `exif`, the
+   * others are left out rather than set to null. This only filters the
+   * result: a jpeg output file always keeps every exif tag of the image.
+   * @default 'full'
+   *
+   * @since 1.3.0
+   */
+  exifTags?: ExifTags;
+  /**
+   * Android only: The format to encode the image in. 'webp-lossy' gives the
+   * smallest files, 'webp-lossless' and 'png' keep every pixel, 'heif' needs
+   * Android 9 and a hardware encoder. The 'speed' preset picks jpeg and the
+   * 'size' preset picks webp-lossy. Formats the device can't encode fall back
+   * to jpeg, exif data is only written to jpeg files.
+   * @default 'jpeg'
+   *
+   * @since 1.3.0
+   */
+  format?: OutputFormat;
+  /**
+   * Android only: The maximum size in bytes of the returned image. The highest
+   * quality that fits is used, and the image is downscaled when even a low
+   * quality doesn't fit. Fails if the image can't be made to fit.
+   *
+   * @since 1.3.0
+   */
+  maxBytes?: number;
+  /**
+   * Android only: How to downscale the image when it's resized. 'speed' picks
+   * the nearest pixels, 'quality' averages every pixel of the image for sharp
+   * results without jagged edges or moiré, at a higher processing cost.
+   * Derivatives are resized the same way.
+   * @default 'speed'
+   *
+   * @since 1.3.0
+   */
+  resizeQuality?: ResizeQuality;
+  /**
+   * Android only: Smaller versions of the image to return along with it, ex:
+   * a thumbnail and a preview. They are all produced from the same decoded
+   * image and are always returned as files.
+   *
+   * @since 1.3.0
+   */
+  derivatives?: DerivativeOptions[];
+  /**
+   * Android only: Return the time spent in each stage of the processing and
+   * the size of the data it went through, in the `metrics` of the result.
+   * Every call is counted in `getMetrics` either way.
+   * @default false
+   *
+   * @since 1.3.0
+   */
+  metrics?: boolean;
+  /**
+   * Android only: Send the thumbnail embedded in the photo through the
+   * `photoPreview` event before processing the photo itself, which is then
+   * processed in the background. Photos without an embedded thumbnail get no
+   * preview. With `allowEditing`, the preview shows the photo before the edit.
+   * @default false
+   *
+   * @since 1.3.0
+   */
+  preview?: boolean;
   /**
    * The source to get the photo from. By default this prompts the user to select
    * either the photo album or take a photo.
@@ -191,7 +599,7 @@ export interface Photo {
    */
   base64String?: string;
   /**
-   * The url starting with 'data:image/jpeg;base64,' and the base64 encoded string representation of the image, if using CameraResultType.DataUrl.
+   * The url starting with 'data:image/jpeg;base64,' (or the mime type of the chosen `format`) and the base64 encoded string representation of the image, if using CameraResultType.DataUrl.
    *
    * @since 1.0.0
    */
@@ -219,7 +627,7 @@ export interface Photo {
   /**
    * The format of the image, ex: jpeg, png, gif.
    *
-   * iOS and Android only support jpeg.
+   * iOS only supports jpeg. Android supports jpeg, webp, png and heif.
    * Web supports jpeg and png. gif is only supported if using file input.
    *
    * @since 1.0.0
@@ -235,15 +643,172 @@ export interface Photo {
    * @since 1.1.0
    */
   saved: boolean;
+  /**
+   * Android only: The derivatives of the image, in the order they were
+   * requested with the `derivatives` option.
+   *
+   * @since 1.3.0
+   */
+  derivatives?: Derivative[];
+  /**
+   * Android only: The timings of the call, when using `metrics`.
+   *
+   * @since 1.3.0
+   */
+  metrics?: ImageMetrics;
+  /**
+   * Android only: Whether the image has fewer pixels than requested, or 16
+   * bit colors, because the device was short on memory. Only set when true.
+   *
+   * @since 1.3.0
+   */
+  degraded?: boolean;
+}
+
+export interface Derivative {
+  /**
+   * Full, platform-specific file URL that can be read later using the Filsystem API.
+   *
+   * @since 1.3.0
+   */
+  path: string;
+  /**
+   * webPath returns a path that can be used to set the src attribute of an image for efficient
+   * loading and rendering.
+   *
+   * @since 1.3.0
+   */
+  webPath: string;
+  /**
+   * The format of the image, ex: jpeg, webp.
+   *
+   * @since 1.3.0
+   */
+  format: string;
+  /**
+   * The width of the image
+   *
+   * @since 1.3.0
+   */
+  width: number;
+  /**
+   * The height of the image
+   *
+   * @since 1.3.0
+   */
+  height: number;
 }
 
 export interface GalleryPhotos {
   /**
    * Array of all the picked photos.
+   * When using `progressive`, the photos are delivered through the
+   * `pickImagesProgress` event instead and this array is empty.
    *
    * @since 1.2.0
    */
   photos: GalleryPhoto[];
+  /**
+   * Android only: The number of picked photos, when using `progressive`.
+   *
+   * @since 1.3.0
+   */
+  total?: number;
+  /**
+   * Android only: The number of picked photos that couldn't be processed,
+   * when using `progressive`.
+   *
+   * @since 1.3.0
+   */
+  failed?: number;
+  /**
+   * Android only: The time in milliseconds it took to process all the picked
+   * photos, when using `progressive`.
+   *
+   * @since 1.3.0
+   */
+  duration?: number;
+  /**
+   * Android only: The id of the call, when using `progressive`. The same id
+   * is sent with every `pickImagesProgress` event of the call.
+   *
+   * @since 1.3.0
+   */
+  callbackId?: string;
+  /**
+   * Android only: The timings of the call, when using `metrics`. The stages
+   * of every picked photo add up.
+   *
+   * @since 1.3.0
+   */
+  metrics?: ImageMetrics;
+}
+
+export interface PickImagesProgressEvent {
+  /**
+   * The id of the `pickImages` call the photo belongs to, to tell apart the
+   * events of calls in progress at the same time. The call resolves with the
+   * same id.
+   *
+   * @since 1.3.0
+   */
+  callbackId: string;
+  /**
+   * The position of the photo in the user selection.
+   *
+   * @since 1.3.0
+   */
+  index: number;
+  /**
+   * The number of picked photos.
+   *
+   * @since 1.3.0
+   */
+  total: number;
+  /**
+   * The time in milliseconds it took to process this photo.
+   *
+   * @since 1.3.0
+   */
+  duration: number;
+  /**
+   * Full, platform-specific file URL that can be read later using the Filsystem API.
+   *
+   * @since 1.3.0
+   */
+  path?: string;
+  /**
+   * webPath returns a path that can be used to set the src attribute of an image for efficient
+   * loading and rendering.
+   *
+   * @since 1.3.0
+   */
+  webPath?: string;
+  /**
+   * Exif data, if any, retrieved from the image
+   *
+   * @since 1.3.0
+   */
+  exif?: any;
+  /**
+   * The format of the image, ex: jpeg.
+   *
+   * @since 1.3.0
+   */
+  format?: string;
+  /**
+   * The reason this photo couldn't be processed, if it failed.
+   *
+   * @since 1.3.0
+   */
+  error?: string;
+  /**
+   * Android only: Whether the image has fewer pixels than requested, or 16
+   * bit colors, because the device was short on memory. Only set when true.
+   *
+   * @since 1.3.0
+   */
+  degraded?: boolean;
 }
 
 export interface GalleryPhoto {
@@ -269,16 +834,31 @@ export interface GalleryPhoto {
   /**
    * The format of the image, ex: jpeg, png, gif.
    *
-   * iOS and Android only support jpeg.
+   * iOS only supports jpeg. Android supports jpeg, webp, png and heif.
    * Web supports jpeg, png and gif.
    *
    * @since 1.2.0
    */
   format: string;
+  /**
+   * Android only: The derivatives of the image, in the order they were
+   * requested with the `derivatives` option.
+   *
+   * @since 1.3.0
+   */
+  derivatives?: Derivative[];
+  /**
+   * Android only: Whether the image has fewer pixels than requested, or 16
+   * bit colors, because the device was short on memory. Only set when true.
+   *
+   * @since 1.3.0
+   */
+  degraded?: boolean;
 }
 export interface GalleryImageOptions {
   /**
-   * The quality of image to return as JPEG, from 0-100
+   * The quality of image to return, from 0-100.
+   * For webp-lossless it trades encoding speed for size on Android 11+.
    *
    * @since 1.2.0
    */
@@ -303,6 +883,66 @@ export interface GalleryImageOptions {
    * @since 1.2.0
    */
   correctOrientation?: boolean;
+  /**
+   * Android only: Which exif tags to return in `exif`.
+   * 'essential' returns the capture date, camera, exposure, orientation and
+   * dimension tags, 'gps' returns the location tags plus decimal
+   * GPSLatitudeDecimal, GPSLongitudeDecimal and GPSAltitudeDecimal values,
+   * 'none' returns an empty object. A list of exif tag names can also be
+   * passed. Only the selected tags the image has are keys of `exif`, the
+   * others are left out rather than set to null. This only filters the
+   * result: a jpeg output file always keeps every exif tag of the image.
+   * @default 'full'
+   *
+   * @since 1.3.0
+   */
+  exifTags?: ExifTags;
+  /**
+   * Android only: The format to encode the image in. 'webp-lossy' gives the
+   * smallest files, 'webp-lossless' and 'png' keep every pixel, 'heif' needs
+   * Android 9 and a hardware encoder. The 'speed' preset picks jpeg and the
+   * 'size' preset picks webp-lossy. Formats the device can't encode fall back
+   * to jpeg, exif data is only written to jpeg files.
+   * @default 'jpeg'
+   *
+   * @since 1.3.0
+   */
+  format?: OutputFormat;
+  /**
+   * Android only: The maximum size in bytes of the returned image. The highest
+   * quality that fits is used, and the image is downscaled when even a low
+   * quality doesn't fit. Fails if the image can't be made to fit.
+   *
+   * @since 1.3.0
+   */
+  maxBytes?: number;
+  /**
+   * Android only: How to downscale the image when it's resized. 'speed' picks
+   * the nearest pixels, 'quality' averages every pixel of the image for sharp
+   * results without jagged edges or moiré, at a higher processing cost.
+   * Derivatives are resized the same way.
+   * @default 'speed'
+   *
+   * @since 1.3.0
+   */
+  resizeQuality?: ResizeQuality;
+  /**
+   * Android only: Smaller versions of the image to return along with it, ex:
+   * a thumbnail and a preview. They are all produced from the same decoded
+   * image and are always returned as files.
+   *
+   * @since 1.3.0
+   */
+  derivatives?: DerivativeOptions[];
+  /**
+   * Android only: Return the time spent in each stage of the processing and
+   * the size of the data it went through, in the `metrics` of the result.
+   * Every call is counted in `getMetrics` either way.
+   * @default false
+   *
+   * @since 1.3.0
+   */
+  metrics?: boolean;
 
   /**
    * iOS only: The presentation style of the Camera.
@@ -319,8 +959,60 @@ export interface GalleryImageOptions {
    * @since 1.2.0
    */
   limit?: number;
+
+  /**
+   * Android only: Deliver every picked photo through the `pickImagesProgress`
+   * event as soon as it is processed, instead of resolving once all of them
+   * are ready. A photo that fails to process doesn't stop the others.
+   * @default false
+   *
+   * @since 1.3.0
+   */
+  progressive?: boolean;
+}
+
+export interface DerivativeOptions {
+  /**
+   * The maximum width of the derivative
+   *
+   * @since 1.3.0
+   */
+  width?: number;
+  /**
+   * The maximum height of the derivative
+   *
+   * @since 1.3.0
+   */
+  height?: number;
+  /**
+   * The quality of the derivative, from 0-100.
+   * Defaults to the quality of the image.
+   *
+   * @since 1.3.0
+   */
+  quality?: number;
+  /**
+   * The format of the derivative.
+   * Defaults to the format of the image.
+   *
+   * @since 1.3.0
+   */
+  format?: OutputFormat;
 }
 
+export type ExifTags = 'none' | 'essential' | 'gps' | 'full' | string[];
+
+export type ResizeQuality = 'speed' | 'quality';
+
+export type OutputFormat =
+  | 'jpeg'
+  | 'webp-lossy'
+  | 'webp-lossless'
+  | 'png'
+  | 'heif'
+  | 'speed'
+  | 'size';
+
 export enum CameraSource {
   /**
    * Prompts the user to select either the photo album or take a photo.
@@ -412,6 +1104,132 @@ export interface VideoOptions {
    * @since 1.0.0
    */
   promptLabelVideo?: string;
+
+  /**
+   * Extract the poster frame and key frames of the video, returned as
+   * `poster` and `keyframes` with the video.
+   *
+   * Android only.
+   *
+   * @since 1.3.0
+   */
+  thumbnails?: VideoThumbnailOptions;
+}
+
+export interface GalleryVideoOptions {
+  /**
+   * Extract the poster frame and key frames of every picked video, returned as
+   * `poster` and `keyframes` with each video.
+   *
+   * @since 1.3.0
+   */
+  thumbnails?: VideoThumbnailOptions;
+}
+
+export interface GalleryVideos {
+  /**
+   * Array of all the picked videos, in the order they were picked.
+   *
+   * @since 1.3.0
+   */
+  videos: Video[];
+}
+
+export interface VideoThumbnailOptions {
+  /**
+   * The number of key frames to extract, spread evenly over the video.
+   * At most 50.
+   *
+   * @default 0
+   *
+   * @since 1.3.0
+   */
+  keyframes?: number;
+  /**
+   * The maximum width of the frames
+   *
+   * @since 1.3.0
+   */
+  width?: number;
+  /**
+   * The maximum height of the frames
+   *
+   * @since 1.3.0
+   */
+  height?: number;
+  /**
+   * The quality of the frames, from 0-100.
+   *
+   * @default 80
+   *
+   * @since 1.3.0
+   */
+  quality?: number;
+}
+
+export interface VideoThumbnailsOptions extends VideoThumbnailOptions {
+  /**
+   * The path of the video, as returned by `getVideo`.
+   *
+   * @since 1.3.0
+   */
+  path: string;
+}
+
+export interface VideoThumbnails {
+  /**
+   * A representative frame of the video.
+   *
+   * @since 1.3.0
+   */
+  poster?: VideoThumbnail;
+  /**
+   * The key frames of the video, in order.
+   *
+   * @since 1.3.0
+   */
+  keyframes?: VideoThumbnail[];
+}
+
+export interface VideoThumbnail {
+  /**
+   * The full, platform-specific file URL of the frame.
+   *
+   * @since 1.3.0
+   */
+  path: string;
+  /**
+   * webPath returns a path that can be used to set the src attribute of an
+   * image for efficient loading and rendering.
+   *
+   * @since 1.3.0
+   */
+  webPath: string;
+  /**
+   * The format of the frame, always jpeg.
+   *
+   * @since 1.3.0
+   */
+  format: string;
+  /**
+   * The width of the frame
+   *
+   * @since 1.3.0
+   */
+  width: number;
+  /**
+   * The height of the frame
+   *
+   * @since 1.3.0
+   */
+  height: number;
+  /**
+   * The time of the frame in the video, in milliseconds.
+   * Not set for the poster.
+   *
+   * @since 1.3.0
+   */
+  time?: number;
 }
 
 export enum CameraVideoSource {
@@ -460,4 +1278,64 @@ export interface Video {
    * @since 1.1.0
    */
   saved: boolean;
+  /**
+   * The duration of the video in milliseconds.
+   *
+   * Android only, not set if the video isn't an mp4, mov or 3gp file.
+   *
+   * @since 1.3.0
+   */
+  duration?: number;
+  /**
+   * The width of the video as displayed, with the rotation applied.
+   *
+   * Android only, not set if the video isn't an mp4, mov or 3gp file.
+   *
+   * @since 1.3.0
+   */
+  width?: number;
+  /**
+   * The height of the video as displayed, with the rotation applied.
+   *
+   * Android only, not set if the video isn't an mp4, mov or 3gp file.
+   *
+   * @since 1.3.0
+   */
+  height?: number;
+  /**
+   * The clockwise rotation the video is displayed with: 0, 90, 180 or 270.
+   *
+   * Android only, not set if the video isn't an mp4, mov or 3gp file.
+   *
+   * @since 1.3.0
+   */
+  rotation?: number;
+  /**
+   * The four character code of the video codec, ex: avc1, hvc1.
+   *
+   * Android only, not set if the video isn't an mp4, mov or 3gp file.
+   *
+   * @since 1.3.0
+   */
+  codec?: string;
+  /**
+   * The average bitrate of the whole file in bits per second.
+   *
+   * Android only, not set if the video isn't an mp4, mov or 3gp file.
+   *
+   * @since 1.3.0
+   */
+  bitrate?: number;
+  /**
+   * A representative frame of the video, when `thumbnails` was set.
+   *
+   * @since 1.3.0
+   */
+  poster?: VideoThumbnail;
+  /**
+   * The key frames of the video, when `thumbnails` asked for some.
+   *
+   * @since 1.3.0
+   */
+  keyframes?: VideoThumbnail[];
 }
\ No newline at end of file
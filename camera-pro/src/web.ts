@@ -2,14 +2,21 @@ import { WebPlugin, CapacitorException } from '@capacitor/core';
 
 import { CameraSource, CameraDirection } from './definitions';
 import type {
+  CacheStats,
   CameraProPlugin,
+  ClearCacheResult,
   GalleryImageOptions,
   GalleryPhotos,
+  GalleryVideoOptions,
+  GalleryVideos,
   ImageOptions,
   PermissionStatus,
   Photo,
+  PipelineMetrics,
   Video,
-  VideoOptions
+  VideoOptions,
+  VideoThumbnails,
+  VideoThumbnailsOptions
 } from './definitions';
 
 export class CameraProWeb extends WebPlugin implements CameraProPlugin {
@@ -51,6 +58,16 @@ export class CameraProWeb extends WebPlugin implements CameraProPlugin {
     return {} as Video;
   }
 
+  async pickVideos(_options: GalleryVideoOptions): Promise<GalleryVideos> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async getVideoThumbnails(
+    _options: VideoThumbnailsOptions,
+  ): Promise<VideoThumbnails> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
   async pickImages(_options: GalleryImageOptions): Promise<GalleryPhotos> {
     // eslint-disable-next-line no-async-promise-executor
     return new Promise<GalleryPhotos>(async resolve => {
@@ -274,6 +291,22 @@ export class CameraProWeb extends WebPlugin implements CameraProPlugin {
     }
   }
 
+  async clearCache(): Promise<ClearCacheResult> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async getCacheStats(): Promise<CacheStats> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async getMetrics(): Promise<PipelineMetrics> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
+  async resetMetrics(): Promise<void> {
+    throw this.unimplemented('Not implemented on web.');
+  }
+
   async requestPermissions(): Promise<PermissionStatus> {
     throw this.unimplemented('Not implemented on web.');
   }